@@ -0,0 +1,77 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import pl.rationalworks.cryptorecommendationservicetest.CryptoRecommendationServiceApplication;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The whole service running against an embedded (in memory) H2 database, loaded with synthetic data
+ * and with all factors evaluated. The scheduler is disabled, so benchmarks are not disturbed by it.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    @Param({"20"})
+    public int symbols;
+    @Param({"60"})
+    public int days;
+    @Param({"24"})
+    public int ticksPerDay;
+
+    SyntheticDataGenerator generator;
+    ConfigurableApplicationContext context;
+    CryptoCurrencyService service;
+    LocalDate lastDay;
+    private Path dataDirectory;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException {
+        generator = new SyntheticDataGenerator(symbols, days, ticksPerDay);
+        lastDay = generator.lastDay();
+        dataDirectory = Files.createTempDirectory("crypto-benchmark");
+        generator.writeFiles(dataDirectory);
+        // passed as arguments, so that they take precedence over application.yaml
+        context = new SpringApplicationBuilder(CryptoRecommendationServiceApplication.class)
+            .web(WebApplicationType.SERVLET)
+            .run(
+                "--server.port=0",
+                "--service.input-data-path=file:" + dataDirectory.toAbsolutePath(),
+                "--service.scheduling.enabled=false",
+                "--service.crypto.supported-currencies=" + IntStream.range(0, symbols)
+                    .mapToObj(SyntheticDataGenerator::symbol).collect(Collectors.joining(",")),
+                "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework=WARN");
+        service = context.getBean(CryptoCurrencyService.class);
+        for (LocalDate date = SyntheticDataGenerator.FIRST_DAY; !date.isAfter(lastDay); date = date.plusDays(1)) {
+            service.evaluateDailyFactors(date);
+            service.evaluateNormalizedFactors(date);
+            service.materializePeriodPriceFactors(date, FactorPeriod.WEEK);
+            service.materializePeriodPriceFactors(date, FactorPeriod.MONTH);
+            service.markDataAsProcessed(date);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+}
@@ -0,0 +1,66 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDataLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing throughput of {@link InputDataLoader}, reported per file and per record (see the <code>records</code>
+ * counter).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CsvParsingBenchmark {
+
+    @Param({"1"})
+    public int symbols;
+    @Param({"365"})
+    public int days;
+    @Param({"1440"})
+    public int ticksPerDay;
+    @Param({"5000"})
+    public int batchSize;
+
+    private final InputDataLoader loader = new InputDataLoader();
+    private Path dataDirectory;
+    private Path dataFile;
+
+    @Setup(Level.Trial)
+    public void generateData() throws IOException {
+        dataDirectory = Files.createTempDirectory("crypto-benchmark");
+        new SyntheticDataGenerator(symbols, days, ticksPerDay).writeFiles(dataDirectory);
+        try (var files = Files.list(dataDirectory)) {
+            dataFile = files.findFirst().orElseThrow();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() throws IOException {
+        FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public long parseFile(RecordCounter counter, Blackhole blackhole) throws IOException {
+        long count = loader.loadFromFile(dataFile, batchSize, blackhole::consume);
+        counter.records += count;
+        return count;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RecordCounter {
+        public long records;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+        }
+    }
+}
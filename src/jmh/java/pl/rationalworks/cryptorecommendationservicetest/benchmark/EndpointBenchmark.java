@@ -0,0 +1,63 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * REST endpoints called through the whole Spring MVC stack (including JSON serialization), without the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class EndpointBenchmark {
+
+    @Param({"DAY", "WEEK", "MONTH"})
+    public String period;
+
+    private MockMvc mockMvc;
+    private String date;
+    private String symbol;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState state) {
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) state.context).build();
+        date = state.lastDay.toString();
+        symbol = SyntheticDataGenerator.symbol(0);
+    }
+
+    @Benchmark
+    public MvcResult ranking() throws Exception {
+        return perform("/api/cryptos/ranking/" + date + "/" + period);
+    }
+
+    @Benchmark
+    public MvcResult factors() throws Exception {
+        return perform("/api/cryptos/" + symbol + "/factors/" + date + "/" + period);
+    }
+
+    @Benchmark
+    public MvcResult best() throws Exception {
+        return perform("/api/cryptos/best/" + date + "/" + period);
+    }
+
+    private MvcResult perform(String path) throws Exception {
+        MvcResult result = mockMvc.perform(get(path)).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            // handled by the request executor
+            result.getAsyncResult();
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        if (result.getResponse().getStatus() != 200) {
+            throw new IllegalStateException(path + " responded with " + result.getResponse().getStatus());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many concurrent clients (benchmark threads, 256 by default, change with <code>-t</code>) calling REST endpoints
+ * of the running server over HTTP, each client over its own connection. Requests shed by the service
+ * (<code>503 Service Unavailable</code>) are counted separately from the successful ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(256)
+@State(Scope.Benchmark)
+public class HttpLoadBenchmark {
+
+    @Param({"WEEK", "MONTH"})
+    public String period;
+
+    private String baseUri;
+    private int symbols;
+    private int days;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState state) {
+        baseUri = "http://localhost:" + ((ServletWebServerApplicationContext) state.context).getWebServer().getPort()
+            + "/api/cryptos/";
+        symbols = state.symbols;
+        days = state.days;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Client {
+
+        public long ok;
+        public long rejected;
+
+        private HttpClient httpClient;
+
+        @Setup(Level.Trial)
+        public void connect() {
+            httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        }
+
+        int get(String uri) throws IOException, InterruptedException {
+            int status = httpClient.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status == 200) {
+                ok++;
+            } else if (status == 503) {
+                rejected++;
+            } else {
+                throw new IllegalStateException(uri + " responded with " + status);
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Factors of a random symbol and date, so that they are not served from a single cache entry.
+     */
+    @Benchmark
+    public int factors(Client client) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return client.get(baseUri + SyntheticDataGenerator.symbol(random.nextInt(symbols)) + "/factors/"
+            + SyntheticDataGenerator.FIRST_DAY.plusDays(random.nextInt(days)) + "/" + period);
+    }
+
+    @Benchmark
+    public int ranking(Client client) throws Exception {
+        return client.get(baseUri + "ranking/"
+            + SyntheticDataGenerator.FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(days)) + "/" + period);
+    }
+}
@@ -0,0 +1,54 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving prices and evaluating factors against the embedded database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    /**
+     * Number of days of a single symbol saved by one invocation of {@link #saveCryptos(ApplicationState)}.
+     */
+    @Param({"7"})
+    public int daysPerBatch;
+
+    private int batches;
+
+    @Benchmark
+    public void saveCryptos(ApplicationState state) {
+        // each invocation saves prices of days following the loaded ones, so rows are always inserted
+        int batch = batches++;
+        List<CsvDataRecord> records = state.generator.records(batch % state.symbols,
+            state.lastDay.plusDays(1 + (long) (batch / state.symbols) * daysPerBatch), daysPerBatch);
+        state.service.saveCryptos(records);
+    }
+
+    @Benchmark
+    public void evaluateDailyFactors(ApplicationState state) {
+        state.service.evaluateDailyFactors(state.lastDay);
+    }
+
+    @Benchmark
+    public void evaluateWeeklyNormalizedFactors(ApplicationState state) {
+        state.service.evaluateNormalizedFactors(state.lastDay, FactorPeriod.WEEK);
+    }
+
+    @Benchmark
+    public void evaluateMonthlyNormalizedFactors(ApplicationState state) {
+        state.service.evaluateNormalizedFactors(state.lastDay, FactorPeriod.MONTH);
+    }
+
+    @Benchmark
+    public void evaluateNormalizedFactors(ApplicationState state) {
+        state.service.evaluateNormalizedFactors(state.lastDay);
+    }
+}
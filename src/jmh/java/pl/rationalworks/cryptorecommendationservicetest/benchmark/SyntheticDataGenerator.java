@@ -0,0 +1,83 @@
+package pl.rationalworks.cryptorecommendationservicetest.benchmark;
+
+import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates reproducible price data: <code>symbols x days x ticksPerDay</code> prices following a random walk,
+ * evenly spread over each day.
+ */
+final class SyntheticDataGenerator {
+
+    static final LocalDate FIRST_DAY = LocalDate.of(2022, 1, 1);
+
+    private final int symbols;
+    private final int days;
+    private final int ticksPerDay;
+
+    SyntheticDataGenerator(int symbols, int days, int ticksPerDay) {
+        this.symbols = symbols;
+        this.days = days;
+        this.ticksPerDay = ticksPerDay;
+    }
+
+    /**
+     * @return symbol of the n-th generated cryptocurrency (matching <code>[A-Z]{2,6}</code>)
+     */
+    static String symbol(int n) {
+        return "X" + (char) ('A' + n / 676 % 26) + (char) ('A' + n / 26 % 26) + (char) ('A' + n % 26);
+    }
+
+    LocalDate lastDay() {
+        return FIRST_DAY.plusDays(days - 1);
+    }
+
+    /**
+     * Writes one CSV data file per symbol into the given directory.
+     */
+    void writeFiles(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (int s = 0; s < symbols; s++) {
+            String symbol = symbol(s);
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(symbol + "_values.csv"))) {
+                writer.write("timestamp,symbol,price\n");
+                for (CsvDataRecord r : records(s, FIRST_DAY, days)) {
+                    writer.write(r.timestamp().toEpochMilli() + "," + symbol + "," + r.price() + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return prices of the n-th symbol for the given days
+     */
+    List<CsvDataRecord> records(int n, LocalDate from, int numberOfDays) {
+        SplittableRandom random = new SplittableRandom(n * 31L + from.toEpochDay());
+        String symbol = symbol(n);
+        long tickMillis = TimeUnit.DAYS.toMillis(1) / ticksPerDay;
+        double price = 10 + random.nextDouble(1000);
+        List<CsvDataRecord> records = new ArrayList<>(numberOfDays * ticksPerDay);
+        for (int d = 0; d < numberOfDays; d++) {
+            long dayStart = from.plusDays(d).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            for (int t = 0; t < ticksPerDay; t++) {
+                price = Math.max(0.01, price * (1 + (random.nextDouble() - 0.5) / 50));
+                records.add(new CsvDataRecord(Instant.ofEpochMilli(dayStart + t * tickMillis), symbol,
+                    FixedPointPrice.of(BigDecimal.valueOf(price))));
+            }
+        }
+        return records;
+    }
+}
@@ -1,23 +1,24 @@
 package pl.rationalworks.cryptorecommendationservicetest;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.Resource;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
-import pl.rationalworks.cryptorecommendationservicetest.data.InputDataLoader;
-import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+import pl.rationalworks.cryptorecommendationservicetest.data.BinarySnapshot;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDataIngestor;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDirectoryWatcher;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,30 +32,42 @@ public class CryptoRecommendationServiceApplication {
 
 	/**
 	 * We need to load input data during application startup.
-	 * @param dataLoader {@link InputDataLoader} instance
-	 * @param service
+	 * Files are loaded in parallel once the application context is ready. Unless <code>service.ingest.background</code>
+	 * is set, the startup (and so the application readiness) waits for all of them.
+	 * With <code>service.ingest.watch</code> set, files created or appended later are loaded as well.
+	 * With <code>service.snapshot.enabled</code> set, the snapshot is restored before that, so only new data is loaded from files.
+	 * @param ingestor {@link InputDataIngestor} instance
+	 * @param directoryWatcher {@link InputDirectoryWatcher} instance
+	 * @param snapshot {@link BinarySnapshot} instance, if enabled
+	 * @param ingestProperties ingestion settings
 	 * @return lambda expression for loading available data files in a given directory
 	 * @throws IOException
 	 */
 	@Bean
-	InitializingBean loadInputData(InputDataLoader dataLoader, CryptoCurrencyService service) throws IOException {
-		Set<String> filePaths;
-		try (Stream<Path> stream = Files.walk(resourceFile.getFile().toPath(), 1)) {
-			filePaths = stream
-				.filter(file -> !Files.isDirectory(file))
-				.map(Path::toAbsolutePath)
-				.map(Path::toString)
-				.collect(Collectors.toSet());
-		}
-		return () -> {
-			filePaths.forEach(path -> {
-				try {
-					List<CsvDataRecord> records = dataLoader.loadFromFile(new FileInputStream(path));
-					service.saveCryptos(records);
-				} catch (IOException e) {
-					log.error("Error while loading data file {}", path, e);
-				}
-			});
+	ApplicationRunner loadInputData(InputDataIngestor ingestor, InputDirectoryWatcher directoryWatcher,
+									Optional<BinarySnapshot> snapshot, IngestProperties ingestProperties) throws IOException {
+		Path directory = resourceFile.getFile().toPath();
+		return args -> {
+			snapshot.ifPresent(s -> ingestor.preload(s::restore));
+			if (ingestProperties.isWatch()) {
+				// registered before listing the files, so that no file created in the meantime is missed;
+				// changes made while the existing files are being loaded are picked up right after that
+				directoryWatcher.register(directory);
+			}
+			Set<Path> filePaths;
+			try (Stream<Path> stream = Files.walk(directory, 1)) {
+				filePaths = stream
+					.filter(file -> !Files.isDirectory(file))
+					.map(Path::toAbsolutePath)
+					.collect(Collectors.toSet());
+			}
+			CompletableFuture<Void> ingestion = ingestor.ingest(filePaths);
+			if (ingestProperties.isWatch()) {
+				ingestion.whenComplete((result, e) -> directoryWatcher.start());
+			}
+			if (!ingestProperties.isBackground()) {
+				ingestion.join();
+			}
 		};
 	}
 
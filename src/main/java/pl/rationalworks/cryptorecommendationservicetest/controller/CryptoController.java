@@ -1,5 +1,8 @@
 package pl.rationalworks.cryptorecommendationservicetest.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -8,23 +11,47 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
 import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoCurrencyDto;
 import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoCurrencyFactorsDto;
+import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoFactorsBucketDto;
+import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoWindowFactorsDto;
+import pl.rationalworks.cryptorecommendationservicetest.model.dto.RankedCryptoDto;
 import pl.rationalworks.cryptorecommendationservicetest.properties.CryptoProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.HttpCacheProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.RankingProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.SchedulingProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.WindowProperties;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
 import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+import pl.rationalworks.cryptorecommendationservicetest.service.DataVersionRegistry;
+import pl.rationalworks.cryptorecommendationservicetest.service.RankingCursor;
+import pl.rationalworks.cryptorecommendationservicetest.service.RankingPage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @RestController
@@ -33,26 +60,108 @@ import java.util.Optional;
 @Validated
 public class CryptoController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String ALL_SYMBOLS = "all";
+
     private final CryptoCurrencyService cryptoCurrencyService;
     private final CryptoProperties cryptoProperties;
+    private final RankingProperties rankingProperties;
+    private final WindowProperties windowProperties;
+    private final ObjectMapper objectMapper;
+    private final RequestExecutor requestExecutor;
+    private final DataVersionRegistry dataVersionRegistry;
+    private final HttpCacheProperties httpCacheProperties;
+    private final SchedulingProperties schedulingProperties;
 
     @GetMapping(value = {"/ranking", "/ranking/{date}", "/ranking/{date}/{period}"})
-    @Operation(summary = "Returns a descending sorted list of all cryptos using a normalized factor as a comparator.")
+    @Operation(summary = "Returns a page of a descending sorted list of all cryptos using a normalized factor as a comparator. "
+        + "The cursor of the next page, if any, is returned in the X-Next-Cursor header.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Ranking was found",
             content = {@Content(mediaType = "application/json", examples = {
-                @ExampleObject(value = "[{\"symbol\":\"XRP\"},{\"symbol\":\"DOGE\"},{\"symbol\":\"ETH\"},{\"symbol\":\"LTC\"},{\"symbol\":\"BTC\"}]")
-            }, schema = @Schema(implementation = CryptoCurrencyDto.class))}),
+                @ExampleObject(value = "[{\"symbol\":\"XRP\",\"normalizedFactor\":0.02779},{\"symbol\":\"DOGE\",\"normalizedFactor\":0.02052},{\"symbol\":\"ETH\",\"normalizedFactor\":0.02035},{\"symbol\":\"LTC\",\"normalizedFactor\":0.01578},{\"symbol\":\"BTC\",\"normalizedFactor\":0.01108}]")
+            }, schema = @Schema(implementation = RankedCryptoDto.class))}),
         @ApiResponse(responseCode = "400", description = "Invalid parameter supplied",
             content = @Content),
         @ApiResponse(responseCode = "404", description = "There is no data to calculate the requested ranking",
             content = @Content)})
-    public ResponseEntity<List<CryptoCurrencyDto>> cryptoRanking(@PathVariable("date")
-                                                                 @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
-                                                                 @PathVariable("period") Optional<FactorPeriod> period) {
-        LocalDate referenceDate = date.orElse(LocalDate.now());
-        List<CryptoCurrencyDto> rankingList = cryptoCurrencyService.cryptoRanking(referenceDate, period.orElse(FactorPeriod.DAY));
-        return ResponseEntity.ok(rankingList);
+    public CompletableFuture<ResponseEntity<List<RankedCryptoDto>>> cryptoRanking(@PathVariable("date")
+                                                                                  @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
+                                                                                  @PathVariable("period") Optional<FactorPeriod> period,
+                                                                                  @RequestParam("limit") Optional<@Positive Integer> limit,
+                                                                                  @RequestParam("cursor") Optional<String> cursor,
+                                                                                  WebRequest request) {
+        Optional<RankingCursor> after;
+        try {
+            after = cursor.map(RankingCursor::decode);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        LocalDate referenceDate = date.orElse(today());
+        FactorPeriod factorPeriod = period.orElse(FactorPeriod.DAY);
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate, factorPeriod, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            RankingPage page = cryptoCurrencyService.cryptoRanking(referenceDate, factorPeriod, after,
+                Math.min(limit.orElse(rankingProperties.getDefaultPageSize()), rankingProperties.getMaxPageSize()));
+            return withNextCursor(validators.apply(ResponseEntity.ok()).varyBy(HttpHeaders.ACCEPT), page)
+                .body(page.items().stream().map(CryptoController::toRankedCryptoDto).toList());
+        });
+    }
+
+    @GetMapping(value = {"/ranking", "/ranking/{date}", "/ranking/{date}/{period}"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Streams a descending sorted list of all cryptos using a normalized factor as a comparator, one JSON object per line. "
+        + "Unless limited, the ranking is streamed whole.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Ranking was found",
+            content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, examples = {
+                @ExampleObject(value = "{\"symbol\":\"XRP\",\"normalizedFactor\":0.02779}\n{\"symbol\":\"DOGE\",\"normalizedFactor\":0.02052}")
+            }, schema = @Schema(implementation = RankedCryptoDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Invalid parameter supplied",
+            content = @Content)})
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamCryptoRanking(
+        @PathVariable("date") @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
+        @PathVariable("period") Optional<FactorPeriod> period,
+        @RequestParam("limit") Optional<@Positive Integer> limit,
+        @RequestParam("cursor") Optional<String> cursor,
+        WebRequest request) {
+        Optional<RankingCursor> after;
+        try {
+            after = cursor.map(RankingCursor::decode);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        LocalDate referenceDate = date.orElse(today());
+        FactorPeriod factorPeriod = period.orElse(FactorPeriod.DAY);
+        // the ranking (and the cursor of the next page, sent as a header) is needed before the body is written
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate, factorPeriod, "-ndjson");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            RankingPage page = cryptoCurrencyService.cryptoRanking(referenceDate, factorPeriod, after, limit.orElse(Integer.MAX_VALUE));
+            ObjectWriter writer = objectMapper.writerFor(RankedCryptoDto.class);
+            StreamingResponseBody body = out -> {
+                for (NormalizedFactor factor : page.items()) {
+                    out.write(writer.writeValueAsBytes(toRankedCryptoDto(factor)));
+                    out.write('\n');
+                }
+            };
+            return withNextCursor(validators.apply(ResponseEntity.ok()).varyBy(HttpHeaders.ACCEPT), page)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+        });
+    }
+
+    private static ResponseEntity.BodyBuilder withNextCursor(ResponseEntity.BodyBuilder response, RankingPage page) {
+        page.nextCursor().ifPresent(next -> response.header(NEXT_CURSOR_HEADER, next.encode()));
+        return response;
+    }
+
+    private static RankedCryptoDto toRankedCryptoDto(NormalizedFactor factor) {
+        return new RankedCryptoDto(factor.symbol(), FixedPointPrice.toBigDecimal(factor.factorValue()));
     }
 
     @GetMapping(value = {"/{symbol}/factors", "/{symbol}/factors/{date}", "/{symbol}/factors/{date}/{period}"})
@@ -66,27 +175,197 @@ public class CryptoController {
             content = @Content),
         @ApiResponse(responseCode = "404", description = "Factors for the requested cryptocurrency are not available (yet)",
             content = @Content)})
-    public ResponseEntity<CryptoCurrencyFactorsDto> obtainCryptoPriceFactors(
+    public CompletableFuture<ResponseEntity<CryptoCurrencyFactorsDto>> obtainCryptoPriceFactors(
         @PathVariable("symbol")
         @Pattern(regexp = "[A-Z]{2,6}", message = "Cryptocurrency symbol must match '[A-Z]{3,6}'") String symbol,
         @PathVariable("date") @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
-        @PathVariable("period") Optional<FactorPeriod> period) {
+        @PathVariable("period") Optional<FactorPeriod> period,
+        WebRequest request) {
         //Instead, from reading those from properties, it would be better read it from the database and store those in a cache
         if (!cryptoProperties.getSupportedCurrencies().contains(symbol)) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
-        LocalDate referenceDate = date.orElse(LocalDate.now());
+        LocalDate referenceDate = date.orElse(today());
         FactorPeriod factorPeriod = period.orElse(FactorPeriod.DAY);
-        Optional<CryptoDailyPriceFactors> factors = cryptoCurrencyService.getCryptoPriceFactors(symbol, referenceDate,
-            factorPeriod);
-        return factors.
-            map(f -> {
-                CryptoCurrencyFactorsDto dto = new CryptoCurrencyFactorsDto(f.symbol(), referenceDate,
-                    f.minPrice(), f.minPriceDate(), f.maxPrice(), f.maxPriceDate(), f.oldestPrice(), f.oldestPriceDate(),
-                    f.newestPrice(), f.newestPriceDate(), factorPeriod);
-                return ResponseEntity.ok(dto);
-            })
-            .orElseGet(() -> ResponseEntity.notFound().build());
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate, factorPeriod, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            Optional<CryptoDailyPriceFactors> factors = cryptoCurrencyService.getCryptoPriceFactors(symbol, referenceDate,
+                factorPeriod);
+            return factors.
+                map(f -> validators.apply(ResponseEntity.ok()).body(toFactorsDto(f, referenceDate, factorPeriod)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+        });
+    }
+
+    @GetMapping(value = {"/factors", "/factors/{date}", "/factors/{date}/{period}"})
+    @Operation(summary = "Returns price factors of the requested cryptos (comma separated symbols or 'all', the default) at once")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Factors of those of the requested cryptocurrencies which have any, sorted by symbol",
+            content = {@Content(mediaType = "application/json", examples = {
+                @ExampleObject(value = "[{\"symbol\":\"BTC\",\"referenceDate\":\"2022-01-05\",\"minPrice\":45922.01000,\"minPriceDate\":\"2022-01-03T21:00:00Z\",\"maxPrice\":47722.66000,\"maxPriceDate\":\"2022-01-02T00:00:00Z\",\"oldestPrice\":46813.21000,\"oldestPriceDate\":\"2022-01-01T04:00:00Z\",\"newestPrice\":46010.72000,\"newestPriceDate\":\"2022-01-05T18:00:00Z\",\"period\":\"WEEK\"},"
+                    + "{\"symbol\":\"DOGE\",\"referenceDate\":\"2022-01-05\",\"minPrice\":0.15990,\"minPriceDate\":\"2022-01-05T20:00:00Z\",\"maxPrice\":0.17310,\"maxPriceDate\":\"2022-01-03T01:00:00Z\",\"oldestPrice\":0.17020,\"oldestPriceDate\":\"2022-01-01T05:00:00Z\",\"newestPrice\":0.15990,\"newestPriceDate\":\"2022-01-05T20:00:00Z\",\"period\":\"WEEK\"}]")
+            }, schema = @Schema(implementation = CryptoCurrencyFactorsDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Invalid parameter supplied",
+            content = @Content)})
+    public CompletableFuture<ResponseEntity<List<CryptoCurrencyFactorsDto>>> obtainCryptosPriceFactors(
+        @RequestParam("symbols")
+        Optional<List<@Pattern(regexp = "[A-Z]{2,6}|all", message = "Cryptocurrency symbol must match '[A-Z]{2,6}' or be 'all'") String>> symbols,
+        @PathVariable("date") @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
+        @PathVariable("period") Optional<FactorPeriod> period,
+        WebRequest request) {
+        Optional<Set<String>> requestedSymbols = symbols
+            .filter(s -> !s.contains(ALL_SYMBOLS))
+            .map(Set::copyOf);
+        if (requestedSymbols.isPresent() && !cryptoProperties.getSupportedCurrencies().containsAll(requestedSymbols.get())) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        LocalDate referenceDate = date.orElse(today());
+        FactorPeriod factorPeriod = period.orElse(FactorPeriod.DAY);
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate, factorPeriod, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            return validators.apply(ResponseEntity.ok()).body(
+                cryptoCurrencyService.getCryptoPriceFactors(requestedSymbols, referenceDate, factorPeriod).stream()
+                    .map(f -> toFactorsDto(f, referenceDate, factorPeriod))
+                    .toList());
+        });
+    }
+
+    @GetMapping(value = {"/{symbol}/window/{days}", "/{symbol}/window/{days}/{date}"})
+    @Operation(summary = "Returns price factors and the normalized factor of the requested crypto over a window of any number of days ending at the given date")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Factors for the requested cryptocurrency exist",
+            content = {@Content(mediaType = "application/json", examples = {
+                @ExampleObject(value = "{\"symbol\":\"ETH\",\"referenceDate\":\"2022-01-20\",\"days\":14,\"minPrice\":3009.22000,\"minPriceDate\":\"2022-01-08T19:00:00Z\",\"maxPrice\":3371.60000,\"maxPriceDate\":\"2022-01-13T00:00:00Z\",\"oldestPrice\":3238.74000,\"oldestPriceDate\":\"2022-01-07T04:00:00Z\",\"newestPrice\":3220.04000,\"newestPriceDate\":\"2022-01-20T15:00:00Z\",\"normalizedFactor\":0.01504}")
+            }, schema = @Schema(implementation = CryptoWindowFactorsDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Invalid parameter supplied",
+            content = @Content),
+        @ApiResponse(responseCode = "404", description = "There are no factors for the requested cryptocurrency in that window",
+            content = @Content)})
+    public CompletableFuture<ResponseEntity<CryptoWindowFactorsDto>> obtainCryptoWindowPriceFactors(
+        @PathVariable("symbol")
+        @Pattern(regexp = "[A-Z]{2,6}", message = "Cryptocurrency symbol must match '[A-Z]{2,6}'") String symbol,
+        @PathVariable("days") @Positive int days,
+        @PathVariable("date") @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
+        WebRequest request) {
+        if (!cryptoProperties.getSupportedCurrencies().contains(symbol) || days > windowProperties.getMaxDays()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        LocalDate referenceDate = date.orElse(today());
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate.minusDays(days - 1L), referenceDate, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            return cryptoCurrencyService.getWindowPriceFactors(symbol, referenceDate, days)
+                .map(f -> validators.apply(ResponseEntity.ok()).body(new CryptoWindowFactorsDto(f.symbol(), referenceDate, days,
+                    FixedPointPrice.toBigDecimal(f.minPrice()), f.minPriceDate(),
+                    FixedPointPrice.toBigDecimal(f.maxPrice()), f.maxPriceDate(),
+                    FixedPointPrice.toBigDecimal(f.oldestPrice()), f.oldestPriceDate(),
+                    FixedPointPrice.toBigDecimal(f.newestPrice()), f.newestPriceDate(),
+                    FixedPointPrice.toBigDecimal(f.dailyPriceFactor()))))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+        });
+    }
+
+    @GetMapping("/{symbol}/series")
+    @Operation(summary = "Streams price factors of the requested crypto for each day (or week, or month) of the given date range")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Factors of the days (weeks, months) of the date range having any, sorted by date",
+            content = {@Content(mediaType = "application/json", examples = {
+                @ExampleObject(value = "[{\"date\":\"2022-01-03\",\"minPrice\":0.16130,\"minPriceDate\":\"2022-01-07T04:00:00Z\",\"maxPrice\":0.17580,\"maxPriceDate\":\"2022-01-05T08:00:00Z\",\"oldestPrice\":0.17000,\"oldestPriceDate\":\"2022-01-03T02:00:00Z\",\"newestPrice\":0.16290,\"newestPriceDate\":\"2022-01-09T22:00:00Z\",\"normalizedFactor\":0.03208}]")
+            }, schema = @Schema(implementation = CryptoFactorsBucketDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Invalid parameter supplied",
+            content = @Content)})
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> streamCryptoPriceFactorsSeries(
+        @PathVariable("symbol")
+        @Pattern(regexp = "[A-Z]{2,6}", message = "Cryptocurrency symbol must match '[A-Z]{2,6}'") String symbol,
+        @RequestParam("from") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+        @RequestParam("to") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to,
+        @RequestParam("bucket") Optional<FactorPeriod> bucket,
+        WebRequest request) {
+        if (!cryptoProperties.getSupportedCurrencies().contains(symbol) || from.isAfter(to)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(from, to, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            return validators.apply(ResponseEntity.ok())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(seriesBody(symbol, from, to, bucket.orElse(FactorPeriod.DAY)));
+        });
+    }
+
+    private StreamingResponseBody seriesBody(String symbol, LocalDate from, LocalDate to, FactorPeriod bucket) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                try {
+                    cryptoCurrencyService.forEachPriceFactorsBucket(symbol, from, to, bucket, b -> {
+                        try {
+                            generator.writeObject(new CryptoFactorsBucketDto(b.date(),
+                                FixedPointPrice.toBigDecimal(b.minPrice()), b.minPriceDate(),
+                                FixedPointPrice.toBigDecimal(b.maxPrice()), b.maxPriceDate(),
+                                FixedPointPrice.toBigDecimal(b.oldestPrice()), b.oldestPriceDate(),
+                                FixedPointPrice.toBigDecimal(b.newestPrice()), b.newestPriceDate(),
+                                FixedPointPrice.toBigDecimal(b.normalizedFactor())));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                generator.writeEndArray();
+            }
+        };
+    }
+
+    /**
+     * Factors of a period which is not processed yet are evaluated from daily factors of all days of that period.
+     */
+    private ResponseValidators validators(LocalDate date, FactorPeriod period, String representation) {
+        // a period starts the day after date.plusDays(daysBack), see DailyRecentFactorRepository
+        LocalDate from = period == FactorPeriod.DAY ? date : date.plusDays(period.getDaysBack() + 1L);
+        return validators(from, date, representation);
+    }
+
+    /**
+     * Only responses about past dates may be reused without revalidation. Today is processed by the scheduler when
+     * there is nothing else to do, but its prices keep coming (also for requests without a date, which mean today).
+     *
+     * @param from           the first date whose data the response is evaluated from
+     * @param to             the last date whose data the response is evaluated from
+     * @param representation distinguishes representations of the same resource
+     */
+    private ResponseValidators validators(LocalDate from, LocalDate to, String representation) {
+        DataVersionRegistry.DateVersion version = dataVersionRegistry.getVersion(from, to);
+        String eTag = "\"%s-%d-%s-%s%s\"".formatted(dataVersionRegistry.getInstanceId(), version.version(), from, to,
+            representation);
+        CacheControl cacheControl = to.isBefore(today()) && dataVersionRegistry.isProcessed(from, to)
+            ? CacheControl.maxAge(httpCacheProperties.getProcessedMaxAge()).cachePublic()
+            : CacheControl.noCache();
+        return new ResponseValidators(eTag, version.modifiedAt(), cacheControl);
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(schedulingProperties.getTimezone());
+    }
+
+    private static CryptoCurrencyFactorsDto toFactorsDto(CryptoDailyPriceFactors f, LocalDate referenceDate, FactorPeriod period) {
+        return new CryptoCurrencyFactorsDto(f.symbol(), referenceDate,
+            FixedPointPrice.toBigDecimal(f.minPrice()), f.minPriceDate(),
+            FixedPointPrice.toBigDecimal(f.maxPrice()), f.maxPriceDate(),
+            FixedPointPrice.toBigDecimal(f.oldestPrice()), f.oldestPriceDate(),
+            FixedPointPrice.toBigDecimal(f.newestPrice()), f.newestPriceDate(),
+            period);
     }
 
     @Operation(summary = "Returns a cryptocurrency with the highest normalized factor for the specified period.")
@@ -100,13 +379,21 @@ public class CryptoController {
             content = @Content),
         @ApiResponse(responseCode = "404", description = "There are no data for the specified period to calculate the best cryptocurrency",
             content = @Content)})
-    public ResponseEntity<CryptoCurrencyDto> obtainBestCrypto(@PathVariable("date")
-                                                              @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
-                                                              @PathVariable("period") Optional<FactorPeriod> period) {
-        LocalDate referenceDate = date.orElse(LocalDate.now());
+    public CompletableFuture<ResponseEntity<CryptoCurrencyDto>> obtainBestCrypto(@PathVariable("date")
+                                                                                 @DateTimeFormat(pattern = "yyyy-MM-dd") Optional<LocalDate> date,
+                                                                                 @PathVariable("period") Optional<FactorPeriod> period,
+                                                                                 WebRequest request) {
+        LocalDate referenceDate = date.orElse(today());
         FactorPeriod factorPeriod = period.orElse(FactorPeriod.DAY);
-        Optional<CryptoCurrencyDto> cryptoCurrency = cryptoCurrencyService.getBestCrypto(referenceDate, factorPeriod);
-        return cryptoCurrency.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        return requestExecutor.supply(() -> {
+            ResponseValidators validators = validators(referenceDate, factorPeriod, "");
+            if (validators.isNotModified(request)) {
+                return validators.notModified();
+            }
+            Optional<CryptoCurrencyDto> cryptoCurrency = cryptoCurrencyService.getBestCrypto(referenceDate, factorPeriod);
+            return cryptoCurrency.map(c -> validators.apply(ResponseEntity.ok()).body(c))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+        });
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
@@ -114,4 +401,18 @@ public class CryptoController {
     ResponseEntity<?> handleConstraintViolationException(ConstraintViolationException e) {
         return new ResponseEntity<>("Validation Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    ResponseEntity<?> handleRejectedExecutionException(RejectedExecutionException e) {
+        log.debug("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .build();
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    ResponseEntity<?> handleTimeoutException(TimeoutException e) {
+        log.debug("Request timed out");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
 }
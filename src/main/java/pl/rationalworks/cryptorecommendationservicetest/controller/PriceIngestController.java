@@ -0,0 +1,152 @@
+package pl.rationalworks.cryptorecommendationservicetest.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDataLoader;
+import pl.rationalworks.cryptorecommendationservicetest.data.LivePriceQueue;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoPriceDto;
+import pl.rationalworks.cryptorecommendationservicetest.model.dto.PriceIngestResultDto;
+import pl.rationalworks.cryptorecommendationservicetest.properties.LiveIngestProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/cryptos/prices")
+@RequiredArgsConstructor
+public class PriceIngestController {
+
+    private final InputDataLoader dataLoader;
+    private final LivePriceQueue livePriceQueue;
+    private final ObjectMapper objectMapper;
+    private final LiveIngestProperties liveIngestProperties;
+    private final Validator validator;
+
+    @PostMapping(consumes = "text/csv")
+    @Operation(summary = "Queues a chunk of prices in the CSV format of data files (with the 'timestamp,symbol,price' header) for saving.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "All prices have been queued",
+            content = {@Content(mediaType = "application/json", examples = {
+                @ExampleObject(value = "{\"accepted\":3,\"rejected\":0}")
+            }, schema = @Schema(implementation = PriceIngestResultDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Malformed or invalid price record, none of the prices has been queued",
+            content = @Content),
+        @ApiResponse(responseCode = "413", description = "More prices than the queue can ever hold, the chunk has to be split",
+            content = @Content(schema = @Schema(implementation = PriceIngestResultDto.class))),
+        @ApiResponse(responseCode = "429", description = "The queue is full, none of the prices has been queued",
+            content = @Content(schema = @Schema(implementation = PriceIngestResultDto.class)))})
+    public ResponseEntity<?> ingestCsv(InputStream body) {
+        List<CsvDataRecord> records;
+        try {
+            // one record more than the queue can hold is enough to tell the chunk is too large
+            records = dataLoader.loadFromFile(body, liveIngestProperties.getQueueCapacity() + 1);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        if (records.size() > liveIngestProperties.getQueueCapacity()) {
+            return tooLarge(records.size());
+        }
+        // parsed prices are always scaled to 5 fractional digits, everything else is checked the same way as NDJSON
+        for (int i = 0; i < records.size(); i++) {
+            CsvDataRecord record = records.get(i);
+            String violations = violations(new CryptoPriceDto(record.timestamp().toEpochMilli(), record.symbol(),
+                FixedPointPrice.toBigDecimal(record.price())));
+            if (violations != null) {
+                return ResponseEntity.badRequest().body("Invalid price record " + (i + 1) + ": " + violations);
+            }
+        }
+        return offer(records);
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Queues a chunk of prices, one JSON object ({\"timestamp\":1641024000000,\"symbol\":\"ETH\",\"price\":3715.32}) per line, for saving.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "All prices have been queued",
+            content = {@Content(mediaType = "application/json", examples = {
+                @ExampleObject(value = "{\"accepted\":3,\"rejected\":0}")
+            }, schema = @Schema(implementation = PriceIngestResultDto.class))}),
+        @ApiResponse(responseCode = "400", description = "Malformed or invalid price record, none of the prices has been queued",
+            content = @Content),
+        @ApiResponse(responseCode = "413", description = "More prices than the queue can ever hold, the chunk has to be split",
+            content = @Content(schema = @Schema(implementation = PriceIngestResultDto.class))),
+        @ApiResponse(responseCode = "429", description = "The queue is full, none of the prices has been queued",
+            content = @Content(schema = @Schema(implementation = PriceIngestResultDto.class)))})
+    public ResponseEntity<?> ingestNdjson(InputStream body) {
+        List<CsvDataRecord> records = new ArrayList<>();
+        try (MappingIterator<CryptoPriceDto> prices = objectMapper.readerFor(CryptoPriceDto.class).readValues(body)) {
+            while (prices.hasNextValue()) {
+                if (records.size() == liveIngestProperties.getQueueCapacity()) {
+                    return tooLarge(records.size() + 1);
+                }
+                CryptoPriceDto price = prices.nextValue();
+                String violations = violations(price);
+                if (violations != null) {
+                    return ResponseEntity.badRequest().body("Invalid price record " + (records.size() + 1) + ": " + violations);
+                }
+                records.add(new CsvDataRecord(Instant.ofEpochMilli(price.timestamp()), price.symbol(),
+                    FixedPointPrice.of(price.price())));
+            }
+        } catch (IOException | ArithmeticException e) {
+            return ResponseEntity.badRequest().body("Malformed price record " + (records.size() + 1) + ": " + e.getMessage());
+        }
+        return offer(records);
+    }
+
+    /**
+     * @return violated constraints of the given price, <code>null</code> if it is valid
+     */
+    private String violations(CryptoPriceDto price) {
+        Set<ConstraintViolation<CryptoPriceDto>> violations = validator.validate(price);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(v -> "'" + v.getPropertyPath() + "' " + v.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * A chunk which would be rejected however long the caller waits. It is not read any further, so the number of
+     * rejected records is only a lower bound.
+     */
+    private ResponseEntity<PriceIngestResultDto> tooLarge(int readRecords) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+            .body(new PriceIngestResultDto(0, readRecords));
+    }
+
+    private ResponseEntity<PriceIngestResultDto> offer(List<CsvDataRecord> records) {
+        if (!livePriceQueue.offer(records)) {
+            log.debug("Rejected {} live price records, the queue is full", records.size());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new PriceIngestResultDto(0, records.size()));
+        }
+        return ResponseEntity.accepted().body(new PriceIngestResultDto(records.size(), 0));
+    }
+}
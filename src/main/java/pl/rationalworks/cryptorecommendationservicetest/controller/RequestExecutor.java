@@ -0,0 +1,89 @@
+package pl.rationalworks.cryptorecommendationservicetest.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pl.rationalworks.cryptorecommendationservicetest.properties.RequestExecutionProperties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs request handlers, which block on database queries, on a bounded pool of <code>service.requests.workers</code>
+ * threads instead of servlet container threads. A container thread is released as soon as its request is queued, so
+ * the number of concurrent clients is not limited by the size of the container thread pool, while the number of
+ * concurrent queries is limited by the number of workers (and, eventually, by the connection pool).
+ * <p>
+ * Requests which do not fit into the queue of <code>service.requests.queue-capacity</code> requests are rejected with
+ * a {@link RejectedExecutionException} (answered with <code>503 Service Unavailable</code>) and counted by the
+ * <code>crypto.requests.rejected</code> counter. Handlers which time out are cancelled. The pool is also used to write
+ * streamed responses.
+ */
+@Component
+public class RequestExecutor implements WebMvcConfigurer, DisposableBean {
+
+    private final RequestExecutionProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    public RequestExecutor(RequestExecutionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        Counter rejected = meterRegistry.counter("crypto.requests.rejected");
+        int workers = Math.max(1, properties.getWorkers());
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+            new CustomizableThreadFactory("request-"),
+            (task, pool) -> {
+                rejected.increment();
+                throw new RejectedExecutionException("Too many requests, " + pool.getQueue().size() + " are queued already");
+            });
+        new ExecutorServiceMetrics(executor, "requests", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * @return result of the given handler, run by one of the workers, or a {@link TimeoutException} if it is not done
+     * within <code>service.requests.timeout</code>; the handler is cancelled then (interrupted if already running), so
+     * that it does not keep a worker busy with a response nobody waits for
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> handler) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(handler.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.orTimeout(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .whenComplete((value, failure) -> {
+                if (failure instanceof TimeoutException) {
+                    task.cancel(true);
+                }
+            });
+        return result;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        configurer.setDefaultTimeout(properties.getTimeout().toMillis());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package pl.rationalworks.cryptorecommendationservicetest.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Validators (strong ETag and Last-Modified) and caching directives of a response, derived from versions of the data
+ * it is evaluated from, so that conditional requests can be answered before evaluating the response.
+ * {@link #isNotModified(WebRequest)} has to be called first, as it sets the validators of the response.
+ */
+record ResponseValidators(String eTag, long lastModified, CacheControl cacheControl) {
+
+    /**
+     * @return <code>true</code> if the client has the current response already (<code>If-None-Match</code> or
+     * <code>If-Modified-Since</code>); the response status is set to <code>304 Not Modified</code> then
+     */
+    boolean isNotModified(WebRequest request) {
+        return request.checkNotModified(eTag, lastModified);
+    }
+
+    <T> ResponseEntity<T> notModified() {
+        return apply(ResponseEntity.status(HttpStatus.NOT_MODIFIED)).build();
+    }
+
+    ResponseEntity.BodyBuilder apply(ResponseEntity.BodyBuilder response) {
+        return response.cacheControl(cacheControl);
+    }
+}
@@ -0,0 +1,484 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrencyId;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoPeriodPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.model.IngestCheckpoint;
+import pl.rationalworks.cryptorecommendationservicetest.model.PeriodPriceFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.SnapshotProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyBulkRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorBulkRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.SnapshotRepository;
+import pl.rationalworks.cryptorecommendationservicetest.service.FactorsUpdatedEvent;
+import pl.rationalworks.cryptorecommendationservicetest.service.PricesSavedEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Binary snapshot of all data (prices, daily factors, period factors and ingest checkpoints), enabled with
+ * {@code service.snapshot.enabled}. It is written at shutdown and every {@code service.snapshot.write-interval} and
+ * restored at startup, so with the in-memory database the service does not need to parse the data files and evaluate
+ * all factors again. Data files are still loaded after the snapshot is restored, but thanks to the restored
+ * checkpoints only data appended to them since the snapshot has been written is loaded.
+ * <p>
+ * The file starts with a header (magic number, format version, time of writing) followed by sections of
+ * prices, daily factors, period factors and checkpoints. All numbers are variable length, signed ones zig-zag encoded
+ * (see {@link SnapshotOutput}), prices are {@link FixedPointPrice} unscaled values and instants are epoch microseconds.
+ * A symbol is written in full where it occurs for the first time and as its index afterwards.
+ * <ul>
+ *     <li>prices are grouped by symbol: the symbol, the number of prices and for each price (ordered by timestamp) the
+ *     (zig-zag encoded) difference from the previous timestamp shifted left, with the processed flag in the lowest bit,
+ *     and the difference from the previous price,</li>
+ *     <li>each factor row starts with its symbol, reference date and a bit mask of non-null columns, followed by
+ *     those columns.</li>
+ * </ul>
+ * Sections of rows are terminated with a <code>0</code> in place of a symbol (or a row marker).
+ */
+@Component
+@ConditionalOnProperty(name = "service.snapshot.enabled")
+@Slf4j
+public class BinarySnapshot implements DisposableBean {
+
+    private static final int MAGIC = 0x4352534E; // "CRSN"
+    private static final int VERSION = 1;
+    private static final int END = 0;
+
+    private final SnapshotRepository snapshotRepository;
+    private final CryptoCurrencyBulkRepository cryptoCurrencyBulkRepository;
+    private final DailyRecentFactorBulkRepository dailyRecentFactorBulkRepository;
+    private final SnapshotProperties snapshotProperties;
+    private final IngestProperties ingestProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate restoreTransaction;
+    // nothing is written until the snapshot has been restored, so that a failed startup does not overwrite it
+    private volatile boolean restored;
+
+    public BinarySnapshot(SnapshotRepository snapshotRepository, CryptoCurrencyBulkRepository cryptoCurrencyBulkRepository,
+                          DailyRecentFactorBulkRepository dailyRecentFactorBulkRepository,
+                          SnapshotProperties snapshotProperties, IngestProperties ingestProperties,
+                          ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.snapshotRepository = snapshotRepository;
+        this.cryptoCurrencyBulkRepository = cryptoCurrencyBulkRepository;
+        this.dailyRecentFactorBulkRepository = dailyRecentFactorBulkRepository;
+        this.snapshotProperties = snapshotProperties;
+        this.ingestProperties = ingestProperties;
+        this.eventPublisher = eventPublisher;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.readTransaction.setReadOnly(true);
+        this.restoreTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Loads the snapshot file (if there is one) into the database, unless the database already holds some prices.
+     * The snapshot is loaded in a single transaction, so a snapshot which cannot be read to its end (i.e. a truncated
+     * one) leaves the database empty, to be loaded from data files in full.
+     */
+    public synchronized void restore() {
+        Path path = snapshotProperties.getPath();
+        try {
+            if (!Files.isRegularFile(path)) {
+                log.info("There is no snapshot {} to restore", path);
+            } else if (snapshotRepository.hasPrices()) {
+                log.info("Database is not empty, snapshot {} is not restored", path);
+            } else {
+                long start = System.nanoTime();
+                long prices = restoreTransaction.execute(status -> {
+                    try {
+                        return read(path);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                log.info("Restored {} prices from snapshot {} in {} ms", prices, path,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (RuntimeException e) {
+            log.error("Restoring snapshot {} failed, data files will be loaded in full", path, e);
+        } finally {
+            restored = true;
+        }
+    }
+
+    /**
+     * Writes all data to the snapshot file, replacing the previous snapshot once the new one is complete.
+     */
+    @Scheduled(fixedDelayString = "${service.snapshot.write-interval:PT1H}",
+        initialDelayString = "${service.snapshot.write-interval:PT1H}")
+    public synchronized void write() {
+        if (!restored) {
+            return;
+        }
+        Path path = snapshotProperties.getPath().toAbsolutePath();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            long start = System.nanoTime();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            long prices;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath), 64 * 1024)) {
+                prices = readTransaction.execute(status -> write(new SnapshotOutput(out)));
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Written {} prices to snapshot {} ({} bytes) in {} ms", prices, path, Files.size(path),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Writing snapshot {} failed", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        write();
+    }
+
+    private long write(SnapshotOutput out) {
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInstant(Instant.now());
+            SymbolWriter symbols = new SymbolWriter(out);
+            long prices = writePrices(out, symbols);
+            writeDailyFactors(out, symbols);
+            writePeriodFactors(out, symbols);
+            writeCheckpoints(out);
+            return prices;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long writePrices(SnapshotOutput out, SymbolWriter symbols) throws IOException {
+        PriceBlockWriter block = new PriceBlockWriter();
+        snapshotRepository.forEachPrice(unchecked(price -> {
+            if (!price.getId().getSymbol().equals(block.symbol)) {
+                block.writeTo(out, symbols);
+                block.start(price.getId().getSymbol());
+            }
+            block.add(price);
+        }));
+        block.writeTo(out, symbols);
+        out.writeVarLong(END);
+        return block.total;
+    }
+
+    private void writeDailyFactors(SnapshotOutput out, SymbolWriter symbols) throws IOException {
+        snapshotRepository.forEachDailyFactors(unchecked(f -> {
+            symbols.write(f.getId().getSymbol());
+            out.writeSignedVarLong(f.getId().getReferenceDate().toEpochDay());
+            writeColumns(out, f.getMinPrice(), f.getMinPriceDate(), f.getMaxPrice(), f.getMaxPriceDate(),
+                f.getOldestPrice(), f.getOldestPriceDate(), f.getNewestPrice(), f.getNewestPriceDate(),
+                f.getDailyNormalizedFactor(), f.getWeeklyNormalizedFactor(), f.getMonthlyNormalizedFactor());
+        }));
+        out.writeVarLong(END);
+    }
+
+    private void writePeriodFactors(SnapshotOutput out, SymbolWriter symbols) throws IOException {
+        snapshotRepository.forEachPeriodFactors(unchecked(f -> {
+            symbols.write(f.getId().getSymbol());
+            out.writeSignedVarLong(f.getId().getReferenceDate().toEpochDay());
+            out.writeByte(f.getId().getPeriod().ordinal());
+            writeColumns(out, f.getMinPrice(), f.getMinPriceDate(), f.getMaxPrice(), f.getMaxPriceDate(),
+                f.getOldestPrice(), f.getOldestPriceDate(), f.getNewestPrice(), f.getNewestPriceDate());
+        }));
+        out.writeVarLong(END);
+    }
+
+    private void writeCheckpoints(SnapshotOutput out) throws IOException {
+        snapshotRepository.forEachCheckpoint(unchecked(c -> {
+            out.writeVarLong(1);
+            out.writeString(c.getPath());
+            out.writeVarLong(c.getByteOffset());
+            out.writeVarLong(c.getPrefixChecksum());
+            out.writeInstant(c.getUpdatedAt());
+        }));
+        out.writeVarLong(END);
+    }
+
+    /**
+     * Writes a bit mask of non-null values followed by those values ({@link FixedPointPrice}s or {@link Instant}s).
+     */
+    private static void writeColumns(SnapshotOutput out, Object... values) throws IOException {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1L << i;
+            }
+        }
+        out.writeVarLong(mask);
+        for (Object value : values) {
+            if (value instanceof FixedPointPrice price) {
+                out.writeSignedVarLong(price.unscaledValue());
+            } else if (value instanceof Instant instant) {
+                out.writeInstant(instant);
+            }
+        }
+    }
+
+    private long read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is too large (" + channel.size() + " bytes)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        SnapshotInput in = new SnapshotInput(buffer);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("File " + path + " is not a snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of snapshot " + path);
+        }
+        Instant writtenAt = in.readInstant();
+        log.info("Restoring snapshot {} written at {}", path, writtenAt);
+        List<String> symbols = new ArrayList<>();
+        long prices = readPrices(in, symbols);
+        Set<LocalDate> dates = new HashSet<>();
+        readDailyFactors(in, symbols, dates);
+        readPeriodFactors(in, symbols);
+        readCheckpoints(in);
+        eventPublisher.publishEvent(new FactorsUpdatedEvent(dates, Set.copyOf(symbols)));
+        return prices;
+    }
+
+    private long readPrices(SnapshotInput in, List<String> symbols) throws IOException {
+        Batch<CryptoCurrency> batch = new Batch<>(prices -> {
+            cryptoCurrencyBulkRepository.upsertAll(prices);
+            eventPublisher.publishEvent(new PricesSavedEvent(prices));
+        });
+        String symbol;
+        long total = 0;
+        while ((symbol = readSymbol(in, symbols)) != null) {
+            long count = in.readVarLong();
+            long timestamp = 0;
+            long price = 0;
+            for (long i = 0; i < count; i++) {
+                long timestampAndFlag = in.readVarLong();
+                timestamp += SnapshotInput.unZigZag(timestampAndFlag >>> 1);
+                price += in.readSignedVarLong();
+                Instant instant = SnapshotInput.ofEpochMicros(timestamp);
+                batch.add(new CryptoCurrency(new CryptoCurrencyId(instant, symbol),
+                    LocalDate.ofInstant(instant, ZoneOffset.UTC), new FixedPointPrice(price), (timestampAndFlag & 1) == 1));
+            }
+            total += count;
+        }
+        batch.flush();
+        return total;
+    }
+
+    private void readDailyFactors(SnapshotInput in, List<String> symbols, Set<LocalDate> dates) throws IOException {
+        Batch<CryptoDailyAggregatedFactors> batch = new Batch<>(dailyRecentFactorBulkRepository::upsertFactors);
+        String symbol;
+        while ((symbol = readSymbol(in, symbols)) != null) {
+            LocalDate date = LocalDate.ofEpochDay(in.readSignedVarLong());
+            long mask = in.readVarLong();
+            dates.add(date);
+            batch.add(CryptoDailyAggregatedFactors.builder()
+                .id(new DailyRecentFactorId(symbol, date))
+                .minPrice(readPrice(in, mask, 0))
+                .minPriceDate(readInstant(in, mask, 1))
+                .maxPrice(readPrice(in, mask, 2))
+                .maxPriceDate(readInstant(in, mask, 3))
+                .oldestPrice(readPrice(in, mask, 4))
+                .oldestPriceDate(readInstant(in, mask, 5))
+                .newestPrice(readPrice(in, mask, 6))
+                .newestPriceDate(readInstant(in, mask, 7))
+                .dailyNormalizedFactor(readPrice(in, mask, 8))
+                .weeklyNormalizedFactor(readPrice(in, mask, 9))
+                .monthlyNormalizedFactor(readPrice(in, mask, 10))
+                .build());
+        }
+        batch.flush();
+    }
+
+    private void readPeriodFactors(SnapshotInput in, List<String> symbols) throws IOException {
+        Batch<CryptoPeriodPriceFactors> batch = new Batch<>(snapshotRepository::upsertPeriodFactors);
+        String symbol;
+        while ((symbol = readSymbol(in, symbols)) != null) {
+            LocalDate date = LocalDate.ofEpochDay(in.readSignedVarLong());
+            FactorPeriod period = FactorPeriod.values()[in.readByte()];
+            long mask = in.readVarLong();
+            batch.add(new CryptoPeriodPriceFactors(new PeriodPriceFactorId(symbol, date, period),
+                readPrice(in, mask, 0), readInstant(in, mask, 1),
+                readPrice(in, mask, 2), readInstant(in, mask, 3),
+                readPrice(in, mask, 4), readInstant(in, mask, 5),
+                readPrice(in, mask, 6), readInstant(in, mask, 7)));
+        }
+        batch.flush();
+    }
+
+    private void readCheckpoints(SnapshotInput in) throws IOException {
+        Batch<IngestCheckpoint> batch = new Batch<>(snapshotRepository::upsertCheckpoints);
+        while (in.readVarLong() != END) {
+            batch.add(new IngestCheckpoint(in.readString(), in.readVarLong(), in.readVarLong(), in.readInstant()));
+        }
+        batch.flush();
+    }
+
+    private static String readSymbol(SnapshotInput in, List<String> symbols) throws IOException {
+        long reference = in.readVarLong();
+        if (reference == END) {
+            return null;
+        }
+        int index = (int) reference - 1;
+        if (index == symbols.size()) {
+            symbols.add(in.readString());
+        } else if (index > symbols.size()) {
+            throw new IOException("Malformed snapshot: unknown symbol " + index);
+        }
+        return symbols.get(index);
+    }
+
+    private static FixedPointPrice readPrice(SnapshotInput in, long mask, int column) throws IOException {
+        return (mask & (1L << column)) == 0 ? null : new FixedPointPrice(in.readSignedVarLong());
+    }
+
+    private static Instant readInstant(SnapshotInput in, long mask, int column) throws IOException {
+        return (mask & (1L << column)) == 0 ? null : in.readInstant();
+    }
+
+    private static <T> Consumer<T> unchecked(IOConsumer<T> consumer) {
+        return value -> {
+            try {
+                consumer.accept(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    /**
+     * Symbols written so far, each is written in full only once.
+     */
+    private static final class SymbolWriter {
+
+        private final SnapshotOutput out;
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private SymbolWriter(SnapshotOutput out) {
+            this.out = out;
+        }
+
+        void write(String symbol) throws IOException {
+            Integer index = indexes.get(symbol);
+            if (index != null) {
+                out.writeVarLong(index + 1);
+            } else {
+                out.writeVarLong(indexes.size() + 1);
+                out.writeString(symbol);
+                indexes.put(symbol, indexes.size());
+            }
+        }
+    }
+
+    /**
+     * Prices of a single symbol, buffered until all of them are known, since their number is written first.
+     */
+    private static final class PriceBlockWriter {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final SnapshotOutput out = new SnapshotOutput(bytes);
+        private String symbol;
+        private long count;
+        private long total;
+        private long timestamp;
+        private long price;
+
+        void start(String symbol) {
+            this.symbol = symbol;
+            this.count = 0;
+            this.timestamp = 0;
+            this.price = 0;
+            this.bytes.reset();
+        }
+
+        void add(CryptoCurrency cryptoCurrency) throws IOException {
+            long micros = SnapshotOutput.toEpochMicros(cryptoCurrency.getId().getTimestamp());
+            out.writeVarLong(SnapshotOutput.zigZag(micros - timestamp) << 1 | (cryptoCurrency.isProcessed() ? 1 : 0));
+            out.writeSignedVarLong(cryptoCurrency.getPrice().unscaledValue() - price);
+            timestamp = micros;
+            price = cryptoCurrency.getPrice().unscaledValue();
+            count++;
+            total++;
+        }
+
+        void writeTo(SnapshotOutput target, SymbolWriter symbols) throws IOException {
+            if (count > 0) {
+                symbols.write(symbol);
+                target.writeVarLong(count);
+                target.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Collects rows and saves them in batches of {@code service.ingest.batch-size}.
+     */
+    private final class Batch<T> {
+
+        private final Consumer<List<T>> saver;
+        private List<T> rows = new ArrayList<>();
+
+        private Batch(Consumer<List<T>> saver) {
+            this.saver = saver;
+        }
+
+        void add(T row) {
+            rows.add(row);
+            if (rows.size() >= ingestProperties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                saver.accept(rows);
+                rows = new ArrayList<>();
+            }
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package pl.rationalworks.cryptorecommendationservicetest.data;
 
-import java.math.BigDecimal;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
 import java.time.Instant;
 
-public record CsvDataRecord(Instant timestamp, String symbol, BigDecimal price) {
+public record CsvDataRecord(Instant timestamp, String symbol, FixedPointPrice price) {
 }
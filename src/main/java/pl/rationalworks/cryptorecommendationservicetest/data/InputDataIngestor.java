@@ -0,0 +1,261 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import pl.rationalworks.cryptorecommendationservicetest.model.IngestCheckpoint;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.IngestCheckpointRepository;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Loads a set of data files concurrently using a fixed pool of workers ({@code service.ingest.workers}).
+ * <p>
+ * Each worker parses one file at a time and saves every batch before reading the next one, so the amount of
+ * not yet persisted data is bounded by {@code workers * batch-size} records no matter how many or how large the
+ * files are.
+ * <p>
+ * How far each file has been ingested is kept in checkpoints ({@link IngestCheckpoint}). Files are loaded from their
+ * checkpoint on, so loading a file again (i.e. after a restart or when data has been appended to it) only ingests its
+ * new lines. A checkpoint is ignored when the file has been truncated or when the first or the last
+ * {@value #CHECKSUM_BLOCK_LENGTH} bytes before the checkpoint have changed (content between them is not compared, so
+ * that checking a checkpoint does not read the whole file); the file is loaded from the beginning again then.
+ * <p>
+ * The last line of a file is loaded even without a line terminator, unless the file might still be written to
+ * (watched files, see {@code service.ingest.watch}); then it is loaded only once the size of the file has not changed
+ * since the previous load, see {@link #getFilesWithIncompleteLastLine()}.
+ * <p>
+ * Saved records are counted by the <code>crypto.ingest.records</code> counter (its rate is the ingest throughput) and
+ * saving of each batch is timed by the <code>crypto.ingest.batch</code> timer.
+ */
+@Component
+@Slf4j
+public class InputDataIngestor implements DisposableBean {
+
+    private static final int CHECKSUM_BLOCK_LENGTH = 4096;
+
+    private final InputDataLoader dataLoader;
+    private final CryptoCurrencyService service;
+    private final IngestProperties ingestProperties;
+    private final IngestCheckpointRepository checkpointRepository;
+    private final Map<Path, Lock> fileLocks = new ConcurrentHashMap<>();
+    /**
+     * Sizes of files whose last line has been left out, as they were when it was left out.
+     */
+    private final Map<Path, Long> incompleteFileSizes = new ConcurrentHashMap<>();
+    private final Counter recordsCounter;
+    private final Timer batchTimer;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile ExecutorService executor;
+
+    public InputDataIngestor(InputDataLoader dataLoader, CryptoCurrencyService service,
+                             IngestProperties ingestProperties, IngestCheckpointRepository checkpointRepository,
+                             MeterRegistry meterRegistry) {
+        this.dataLoader = dataLoader;
+        this.service = service;
+        this.ingestProperties = ingestProperties;
+        this.checkpointRepository = checkpointRepository;
+        this.recordsCounter = Counter.builder("crypto.ingest.records")
+            .description("Number of price records saved from data files")
+            .baseUnit("records")
+            .register(meterRegistry);
+        this.batchTimer = Timer.builder("crypto.ingest.batch")
+            .description("Time of saving a single batch of price records")
+            .register(meterRegistry);
+        meterRegistry.gauge("crypto.ingest.active", loading, active -> active.get() ? 1 : 0);
+    }
+
+    /**
+     * Starts loading given files in the background.
+     *
+     * @param files data files to load
+     * @return future completed once all files have been processed
+     */
+    public CompletableFuture<Void> ingest(Collection<Path> files) {
+        if (files.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!loading.compareAndSet(false, true)) {
+            throw new IllegalStateException("Input data is already being loaded");
+        }
+        int workers = Math.max(1, Math.min(ingestProperties.getWorkers(), files.size()));
+        executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("ingest-"));
+        log.info("Loading {} data files using {} workers", files.size(), workers);
+
+        long start = System.nanoTime();
+        AtomicInteger filesDone = new AtomicInteger();
+        AtomicLong recordsDone = new AtomicLong();
+        CompletableFuture<?>[] futures = files.stream()
+            .map(file -> CompletableFuture.runAsync(() -> {
+                long count = ingestFile(file, !ingestProperties.isWatch());
+                log.info("Loaded {} records from data file {} ({}/{} files done)",
+                    count, file, filesDone.incrementAndGet(), files.size());
+                recordsDone.addAndGet(count);
+            }, executor))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures)
+            .whenComplete((result, e) -> {
+                executor.shutdown();
+                loading.set(false);
+                if (e != null) {
+                    log.error("Loading input data failed", e);
+                } else {
+                    long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    log.info("Loaded {} records from {} data files in {} ms ({} records/s)", recordsDone.get(),
+                        files.size(), millis, recordsDone.get() * 1000 / millis);
+                }
+            });
+    }
+
+    /**
+     * Runs the given task (i.e. restoring a {@link BinarySnapshot}) in the calling thread, reporting that data is being
+     * loaded until it is finished.
+     */
+    public void preload(Runnable task) {
+        if (!loading.compareAndSet(false, true)) {
+            throw new IllegalStateException("Input data is already being loaded");
+        }
+        try {
+            task.run();
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    /**
+     * @return <code>true</code> while data files passed to {@link #ingest(Collection)} (or data passed to
+     * {@link #preload(Runnable)}) are still being loaded
+     */
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    /**
+     * Loads the data of the given file which has not been ingested yet, in the calling thread.
+     *
+     * @return number of loaded records
+     */
+    public long ingestNewData(Path file) {
+        return ingestFile(file, false);
+    }
+
+    /**
+     * @return files whose last line has not been loaded yet, as it has no line terminator and the file might still be
+     * written to; the line is loaded by the next {@link #ingestNewData(Path)} if the file has not changed meanwhile
+     */
+    public Set<Path> getFilesWithIncompleteLastLine() {
+        incompleteFileSizes.keySet().removeIf(file -> !Files.isRegularFile(file)); // deleted meanwhile
+        return Set.copyOf(incompleteFileSizes.keySet());
+    }
+
+    /**
+     * @param notWritten whether the file is not being written anymore, so its last line is complete even without
+     *                   a line terminator
+     */
+    private long ingestFile(Path file, boolean notWritten) {
+        Path path = file.toAbsolutePath().normalize();
+        Lock lock = fileLocks.computeIfAbsent(path, p -> new ReentrantLock());
+        lock.lock();
+        AtomicLong saved = new AtomicLong();
+        try {
+            long offset = checkpointRepository.findById(path.toString())
+                .filter(checkpoint -> isValid(path, checkpoint))
+                .map(IngestCheckpoint::getByteOffset)
+                .orElse(0L);
+            long size = Files.size(path);
+            if (offset == size) {
+                incompleteFileSizes.remove(path);
+                return 0;
+            }
+            boolean completeLinesOnly = !notWritten && !Long.valueOf(size).equals(incompleteFileSizes.get(path));
+            long newOffset = dataLoader.loadLines(path, offset, completeLinesOnly, ingestProperties.getBatchSize(), batch -> {
+                batchTimer.record(() -> service.saveCryptos(batch));
+                recordsCounter.increment(batch.size());
+                log.debug("Saved {} records from data file {} so far", saved.addAndGet(batch.size()), path);
+            });
+            if (newOffset != offset) {
+                checkpointRepository.save(new IngestCheckpoint(path.toString(), newOffset,
+                    prefixChecksum(path, newOffset), Instant.now()));
+            }
+            if (newOffset < size) {
+                incompleteFileSizes.put(path, size);
+            } else {
+                incompleteFileSizes.remove(path);
+            }
+            return saved.get();
+        } catch (IOException e) {
+            log.error("Error while loading data file {}", path, e);
+            return saved.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isValid(Path file, IngestCheckpoint checkpoint) {
+        try {
+            return Files.size(file) >= checkpoint.getByteOffset()
+                && prefixChecksum(file, checkpoint.getByteOffset()) == checkpoint.getPrefixChecksum();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return CRC32 of the first and the last {@value #CHECKSUM_BLOCK_LENGTH} bytes (or all of them, if there are not
+     * more) of the given part of the file
+     */
+    static long prefixChecksum(Path file, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (length <= 2 * CHECKSUM_BLOCK_LENGTH) {
+                crc.update(read(channel, 0, (int) length));
+            } else {
+                crc.update(read(channel, 0, CHECKSUM_BLOCK_LENGTH));
+                crc.update(read(channel, length - CHECKSUM_BLOCK_LENGTH, CHECKSUM_BLOCK_LENGTH));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // read until the buffer is full
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void destroy() {
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,39 +1,315 @@
 package pl.rationalworks.cryptorecommendationservicetest.data;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import org.springframework.stereotype.Component;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Streaming loader for CSV price files (<code>timestamp,symbol,price</code>).
+ * <p>
+ * Input is read through NIO channels into a single, fixed size buffer and each line is parsed directly from its bytes.
+ * Parsed records are pushed downstream in fixed size batches, so the memory used while loading depends only on the
+ * buffer and batch sizes, never on the size of the file. The first line of each file is skipped if it is the
+ * <code>timestamp,symbol,price</code> header, so headerless chunks (i.e. posted by live feeds) lose no record.
+ */
 @Component
 public class InputDataLoader {
 
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] HEADER = "timestamp,symbol,price".getBytes(StandardCharsets.US_ASCII);
+
+    private final int bufferSize;
+
+    public InputDataLoader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public InputDataLoader(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Loads the whole input into memory. Meant for small inputs only, use
+     * {@link #loadFromFile(Path, int, Consumer)} for anything that might be large.
+     */
     public List<CsvDataRecord> loadFromFile(InputStream inputStream) throws IOException {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(inputStream))) {
-            CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
-                    .setHeader(Headers.class)
-                    .setSkipHeaderRecord(true)
-                    .build();
-            CSVParser csvParser = csvFormat.parse(in);
-            return csvParser.stream().map(record -> {
-                        String timestamp = record.get(Headers.timestamp);
-                        String symbol = record.get(Headers.symbol);
-                        String price = record.get(Headers.price);
-                        return new CsvDataRecord(
-                                Instant.ofEpochMilli(Long.parseLong(timestamp)),
-                                symbol,
-                                new BigDecimal(price));
-                    }
-            ).toList();
+        return loadFromFile(inputStream, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Loads the input into memory, but stops reading it once the given number of records has been loaded.
+     *
+     * @return at most <code>maxRecords</code> records; if there are exactly that many, the input may have more
+     */
+    public List<CsvDataRecord> loadFromFile(InputStream inputStream, int maxRecords) throws IOException {
+        checkBatchSize(maxRecords);
+        List<CsvDataRecord> records = new ArrayList<>();
+        new CsvChunkParser(maxRecords, records::addAll, false, false, maxRecords)
+            .parse(Channels.newChannel(inputStream), ByteBuffer.allocate(bufferSize));
+        return records;
+    }
+
+    /**
+     * @param path          data file to load
+     * @param batchSize     maximum number of records passed to the consumer at once
+     * @param batchConsumer receives consecutive batches of parsed records; each batch is a new list it may keep
+     * @return total number of records loaded from the file
+     */
+    public long loadFromFile(Path path, int batchSize, Consumer<List<CsvDataRecord>> batchConsumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return load(channel, batchSize, batchConsumer);
         }
     }
 
-    enum Headers {
-        timestamp, symbol, price
+    public long load(ReadableByteChannel channel, int batchSize, Consumer<List<CsvDataRecord>> batchConsumer) throws IOException {
+        checkBatchSize(batchSize);
+        return new CsvChunkParser(batchSize, batchConsumer, false, false, Long.MAX_VALUE).parse(channel, ByteBuffer.allocate(bufferSize));
     }
 
+    /**
+     * Loads the lines of a file starting at the given byte offset, e.g. the data appended since the previous load.
+     * Only complete (newline terminated) lines are loaded, a line still being written is left for the next load.
+     * The header is looked for only when loading from the beginning of the file.
+     *
+     * @param offset offset of the first line to load, <code>0</code> or a value returned by a previous load
+     * @return offset right after the last loaded line
+     */
+    public long loadCompleteLines(Path path, long offset, int batchSize, Consumer<List<CsvDataRecord>> batchConsumer) throws IOException {
+        return loadLines(path, offset, true, batchSize, batchConsumer);
+    }
+
+    /**
+     * Loads the lines of a file starting at the given byte offset, see {@link #loadCompleteLines(Path, long, int, Consumer)}.
+     *
+     * @param completeLinesOnly whether the last line is left out unless it is newline terminated; it should be loaded
+     *                          once the file is not being written anymore
+     * @return offset right after the last loaded line
+     */
+    public long loadLines(Path path, long offset, boolean completeLinesOnly, int batchSize,
+                          Consumer<List<CsvDataRecord>> batchConsumer) throws IOException {
+        checkBatchSize(batchSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(offset);
+            CsvChunkParser parser = new CsvChunkParser(batchSize, batchConsumer, offset > 0, completeLinesOnly, Long.MAX_VALUE);
+            parser.parse(channel, ByteBuffer.allocate(bufferSize));
+            return offset + parser.parsedBytes;
+        }
+    }
+
+    private static void checkBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+    }
+
+    /**
+     * Single use parser keeping the state of one load (current line, pending batch).
+     */
+    private static final class CsvChunkParser {
+
+        private final int batchSize;
+        private final Consumer<List<CsvDataRecord>> batchConsumer;
+        private final boolean completeLinesOnly;
+        // nothing is read once that many records are parsed
+        private final long maxRecords;
+        private final SymbolTable symbols = new SymbolTable();
+        private List<CsvDataRecord> batch;
+        private long lineNumber;
+        private long recordCount;
+        private boolean headerChecked;
+        // number of bytes up to the end of the last parsed line
+        private long parsedBytes;
+
+        private CsvChunkParser(int batchSize, Consumer<List<CsvDataRecord>> batchConsumer, boolean headerChecked,
+                               boolean completeLinesOnly, long maxRecords) {
+            this.batchSize = batchSize;
+            this.batchConsumer = batchConsumer;
+            this.completeLinesOnly = completeLinesOnly;
+            this.maxRecords = maxRecords;
+            this.headerChecked = headerChecked;
+            this.batch = newBatch();
+        }
+
+        long parse(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+            byte[] bytes = buffer.array();
+            long bufferOffset = 0;
+            while (true) {
+                boolean eof = channel.read(buffer) < 0;
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit && recordCount < maxRecords; i++) {
+                    if (bytes[i] == '\n') {
+                        parseLine(bytes, lineStart, i);
+                        lineStart = i + 1;
+                        parsedBytes = bufferOffset + lineStart;
+                    }
+                }
+                if (recordCount >= maxRecords) {
+                    break;
+                }
+                if (eof) {
+                    if (lineStart < limit && !completeLinesOnly) { // last line without a line terminator
+                        parseLine(bytes, lineStart, limit);
+                        parsedBytes = bufferOffset + limit;
+                    }
+                    break;
+                }
+                // move the incomplete line to the beginning of the buffer and read the rest of it
+                buffer.limit(limit).position(lineStart);
+                buffer.compact();
+                bufferOffset += lineStart;
+                if (!buffer.hasRemaining()) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than the read buffer (" + bytes.length + " bytes)");
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+            return recordCount;
+        }
+
+        private void parseLine(byte[] bytes, int from, int to) throws IOException {
+            lineNumber++;
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            if (to == from) {
+                return; // skip blank lines
+            }
+            if (!headerChecked) {
+                headerChecked = true;
+                if (isHeader(bytes, from, to)) {
+                    return;
+                }
+            }
+            int firstComma = indexOf(bytes, from, to, (byte) ',');
+            int secondComma = firstComma < 0 ? -1 : indexOf(bytes, firstComma + 1, to, (byte) ',');
+            if (secondComma < 0 || firstComma == from || secondComma == firstComma + 1 || secondComma == to - 1) {
+                throw malformed("expected 'timestamp,symbol,price'");
+            }
+            long epochMillis = parseLong(bytes, from, firstComma);
+            String symbol = symbols.intern(bytes, firstComma + 1, secondComma);
+            FixedPointPrice price = parsePrice(bytes, secondComma + 1, to);
+            batch.add(new CsvDataRecord(Instant.ofEpochMilli(epochMillis), symbol, price));
+            recordCount++;
+            if (batch.size() >= batchSize) {
+                batchConsumer.accept(batch);
+                batch = newBatch();
+            }
+        }
+
+        private long parseLong(byte[] bytes, int from, int to) throws IOException {
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                    throw malformed("invalid timestamp");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * Parses the price straight into a {@link FixedPointPrice}. Fast path for plain decimals
+         * (<code>-?\d+(\.\d+)?</code>) fitting in a long: fractional digits beyond the scale are dropped and the value is
+         * rounded half up based on the first dropped digit. Anything else (exponents, very long numbers) goes through
+         * {@link BigDecimal#BigDecimal(String)}.
+         */
+        private FixedPointPrice parsePrice(byte[] bytes, int from, int to) throws IOException {
+            boolean negative = bytes[from] == '-';
+            int i = negative ? from + 1 : from;
+            long unscaled = 0;
+            int scale = -1;
+            int digits = 0;
+            boolean roundUp = false;
+            for (; i < to; i++) {
+                byte b = bytes[i];
+                if (b == '.' && scale < 0) {
+                    scale = 0;
+                    continue;
+                }
+                if (b < '0' || b > '9') {
+                    return parsePriceSlowly(bytes, from, to);
+                }
+                if (scale >= FixedPointPrice.SCALE) { // digits beyond the scale are dropped
+                    if (scale++ == FixedPointPrice.SCALE) {
+                        roundUp = b >= '5';
+                    }
+                    continue;
+                }
+                unscaled = unscaled * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            }
+            if (digits == 0) {
+                throw malformed("invalid price");
+            }
+            scale = Math.max(scale, 0);
+            if (digits + FixedPointPrice.SCALE - Math.min(scale, FixedPointPrice.SCALE) > 18) {
+                return parsePriceSlowly(bytes, from, to);
+            }
+            for (; scale < FixedPointPrice.SCALE; scale++) {
+                unscaled *= 10;
+            }
+            if (roundUp) {
+                unscaled++;
+            }
+            return new FixedPointPrice(negative ? -unscaled : unscaled);
+        }
+
+        private FixedPointPrice parsePriceSlowly(byte[] bytes, int from, int to) throws IOException {
+            try {
+                return FixedPointPrice.of(new BigDecimal(new String(bytes, from, to - from, StandardCharsets.US_ASCII)));
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw malformed("invalid price");
+            }
+        }
+
+        private IOException malformed(String reason) {
+            return new IOException("Malformed CSV record at line " + lineNumber + ": " + reason);
+        }
+
+        private List<CsvDataRecord> newBatch() {
+            return new ArrayList<>(Math.min(batchSize, 1024));
+        }
+
+        private static boolean isHeader(byte[] bytes, int from, int to) {
+            if (to - from != HEADER.length) {
+                return false;
+            }
+            for (int i = 0; i < HEADER.length; i++) {
+                if (Character.toLowerCase(bytes[from + i]) != HEADER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int indexOf(byte[] bytes, int from, int to, byte value) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the input data directory (enabled with {@code service.ingest.watch}) and hands data files which have been
+ * created or modified over to {@link InputDataIngestor#ingestNewData(Path)}, one by one, in a single background thread.
+ * Changes are collected for {@code service.ingest.watch-delay} before they are ingested, so that a file being written
+ * is not loaded on every single write. Files whose last line has no line terminator yet are checked again after the
+ * same delay, their last line is loaded once the file has not changed in the meantime.
+ */
+@Component
+@Slf4j
+public class InputDirectoryWatcher implements DisposableBean {
+
+    private final InputDataIngestor ingestor;
+    private final IngestProperties ingestProperties;
+    private WatchService watchService;
+    private ExecutorService executor;
+
+    public InputDirectoryWatcher(InputDataIngestor ingestor, IngestProperties ingestProperties) {
+        this.ingestor = ingestor;
+        this.ingestProperties = ingestProperties;
+    }
+
+    /**
+     * Starts watching the given directory. Changes made from now on are ingested once the watcher is
+     * {@link #start() started}.
+     */
+    public synchronized void register(Path directory) throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Input data directory is already being watched");
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("input-watcher-"));
+        log.info("Watching input data directory {}", directory);
+    }
+
+    /**
+     * Starts ingesting changes of the registered directory.
+     */
+    public synchronized void start() {
+        if (watchService == null) {
+            throw new IllegalStateException("No input data directory has been registered");
+        }
+        executor.execute(this::watchContinuously);
+    }
+
+    private void watchContinuously() {
+        try {
+            long delay = ingestProperties.getWatchDelay().toMillis();
+            while (true) {
+                Set<Path> changedFiles = new TreeSet<>(ingestor.getFilesWithIncompleteLastLine());
+                WatchKey key = changedFiles.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(delay, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Thread.sleep(delay);
+                }
+                for (; key != null; key = watchService.poll()) {
+                    if (!collectChanges(key, changedFiles)) {
+                        log.warn("Input data directory {} is no longer accessible, stopped watching it", key.watchable());
+                        return;
+                    }
+                }
+                for (Path file : changedFiles) {
+                    if (Files.isRegularFile(file)) {
+                        ingest(file);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Stopped watching the input data directory");
+        }
+    }
+
+    private void ingest(Path file) {
+        try {
+            long count = ingestor.ingestNewData(file);
+            if (count > 0) {
+                log.info("Loaded {} new records from data file {}", count, file);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error while loading new data of data file {}", file, e);
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the directory is not watched anymore
+     */
+    private static boolean collectChanges(WatchKey key, Set<Path> changedFiles) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) { // some events have been lost, check all files
+                try (Stream<Path> files = Files.list(directory)) {
+                    files.forEach(changedFiles::add);
+                } catch (IOException e) {
+                    log.error("Error while listing input data directory {}", directory, e);
+                }
+            } else {
+                changedFiles.add(directory.resolve((Path) event.context()));
+            }
+        }
+        return key.reset();
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
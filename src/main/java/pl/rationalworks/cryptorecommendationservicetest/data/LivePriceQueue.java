@@ -0,0 +1,199 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import pl.rationalworks.cryptorecommendationservicetest.properties.LiveIngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue of prices received from live feeds (see {@code service.live-ingest}).
+ * <p>
+ * Received chunks are accepted as a whole or not at all: once {@code queue-capacity} records are waiting to be saved,
+ * new chunks are rejected, so callers can back off instead of piling up work in front of the database. A single
+ * flusher thread coalesces queued records into micro-batches of up to {@code batch-size} records, waiting at most
+ * {@code max-batch-delay} for a batch to fill up, and saves them with {@link CryptoCurrencyService#saveCryptos(List)}.
+ * A record counts against the capacity until its batch is saved.
+ * <p>
+ * Records are validated before they are queued, so a batch should not fail because of its data. If it does
+ * nevertheless (a {@link DataIntegrityViolationException}), its records are saved one by one, so that a single bad
+ * record does not take records of other clients down with it. Records which cannot be saved even then are dropped,
+ * logged and counted by the <code>crypto.ingest.live.records</code> counter tagged with <code>result=dropped</code>.
+ * Any other failure (i.e. the database is not available or a lock timed out) says nothing about the records, which have
+ * been accepted already, so they are saved again after {@code retry-backoff}, doubled after each failure up to
+ * {@code max-retry-backoff}, until they are saved. They keep counting against the capacity meanwhile, so new chunks
+ * are rejected once the queue fills up. Only records still failing at shutdown are dropped.
+ */
+@Component
+@Slf4j
+public class LivePriceQueue implements DisposableBean {
+
+    private final CryptoCurrencyService service;
+    private final LiveIngestProperties liveIngestProperties;
+    private final BlockingQueue<CsvDataRecord> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+    private final Counter retriesCounter;
+    private final Timer flushTimer;
+    private final ExecutorService flusher;
+
+    public LivePriceQueue(CryptoCurrencyService service, LiveIngestProperties liveIngestProperties,
+                          MeterRegistry meterRegistry) {
+        this.service = service;
+        this.liveIngestProperties = liveIngestProperties;
+        this.capacity = new Semaphore(liveIngestProperties.getQueueCapacity());
+        this.acceptedCounter = Counter.builder("crypto.ingest.live.records")
+            .description("Number of price records received from live feeds")
+            .baseUnit("records")
+            .tag("result", "accepted")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("crypto.ingest.live.records")
+            .description("Number of price records received from live feeds")
+            .baseUnit("records")
+            .tag("result", "rejected")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("crypto.ingest.live.records")
+            .description("Number of price records received from live feeds")
+            .baseUnit("records")
+            .tag("result", "dropped")
+            .register(meterRegistry);
+        this.retriesCounter = Counter.builder("crypto.ingest.live.retries")
+            .description("Number of failed attempts to save live price records which have been retried")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("crypto.ingest.live.flush")
+            .description("Time of saving a micro-batch of live price records")
+            .register(meterRegistry);
+        meterRegistry.gauge("crypto.ingest.live.queued", capacity,
+            c -> liveIngestProperties.getQueueCapacity() - c.availablePermits());
+        this.flusher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("live-ingest-"));
+        this.flusher.execute(this::flushContinuously);
+    }
+
+    /**
+     * Queues all given records, unless there is not enough room left for them.
+     *
+     * @return <code>true</code> if the records have been queued, <code>false</code> if they have been rejected
+     */
+    public boolean offer(List<CsvDataRecord> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        if (!capacity.tryAcquire(records.size())) {
+            rejectedCounter.increment(records.size());
+            return false;
+        }
+        queue.addAll(records);
+        acceptedCounter.increment(records.size());
+        return true;
+    }
+
+    private void flushContinuously() {
+        int batchSize = Math.max(1, liveIngestProperties.getBatchSize());
+        long maxDelayNanos = liveIngestProperties.getMaxBatchDelay().toNanos();
+        List<CsvDataRecord> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        CsvDataRecord next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                flush(batch, true);
+                batch = new ArrayList<>(batchSize);
+            }
+        } catch (InterruptedException e) {
+            // shutting down, save whatever has been accepted so far, without waiting for the database to come back
+        }
+        queue.drainTo(batch);
+        flush(batch, false);
+    }
+
+    private void flush(List<CsvDataRecord> batch, boolean retry) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            save(batch, retry);
+            log.debug("Saved {} live price records", batch.size());
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Saving {} live price records failed, saving them one by one", batch.size(), e);
+            batch.forEach(record -> saveSingle(record, retry));
+        } catch (RuntimeException e) {
+            droppedCounter.increment(batch.size());
+            log.error("Dropped {} live price records", batch.size(), e);
+        } finally {
+            capacity.release(batch.size());
+        }
+    }
+
+    private void saveSingle(CsvDataRecord record, boolean retry) {
+        try {
+            save(List.of(record), retry);
+        } catch (RuntimeException e) {
+            droppedCounter.increment();
+            log.error("Dropped live price record {}", record, e);
+        }
+    }
+
+    /**
+     * Saves given records, again and again (unless <code>retry</code> is <code>false</code>) for as long as saving them
+     * fails for other reasons than their data, or the flusher is interrupted.
+     *
+     * @throws DataIntegrityViolationException if the records cannot be saved
+     */
+    private void save(List<CsvDataRecord> records, boolean retry) {
+        long backoffMillis = Math.max(1, liveIngestProperties.getRetryBackoff().toMillis());
+        while (true) {
+            try {
+                flushTimer.record(() -> service.saveCryptos(records));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (!retry || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                retriesCounter.increment();
+                log.warn("Saving {} live price records failed, trying again in {} ms", records.size(), backoffMillis, e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMillis = Math.min(backoffMillis * 2,
+                    Math.max(backoffMillis, liveIngestProperties.getMaxRetryBackoff().toMillis()));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdownNow();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Live price records still queued at shutdown might not have been saved");
+        }
+    }
+}
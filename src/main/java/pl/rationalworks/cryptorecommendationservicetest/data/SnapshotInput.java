@@ -0,0 +1,82 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Reads values written by {@link SnapshotOutput} from a (memory mapped) buffer. Not thread-safe.
+ */
+final class SnapshotInput {
+
+    private final ByteBuffer buffer;
+
+    SnapshotInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() throws IOException {
+        try {
+            return buffer.get() & 0xFF;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    int readInt() throws IOException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed snapshot: variable length integer is too long");
+    }
+
+    long readSignedVarLong() throws IOException {
+        return unZigZag(readVarLong());
+    }
+
+    private int readLength() throws IOException {
+        long length = readVarLong();
+        if (length > buffer.remaining()) {
+            throw truncated();
+        }
+        return (int) length;
+    }
+
+    String readString() throws IOException {
+        byte[] bytes = new byte[readLength()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Instant readInstant() throws IOException {
+        return ofEpochMicros(readSignedVarLong());
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static Instant ofEpochMicros(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    private static IOException truncated() {
+        return new IOException("Malformed snapshot: unexpected end of data");
+    }
+}
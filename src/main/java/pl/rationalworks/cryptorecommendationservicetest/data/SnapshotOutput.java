@@ -0,0 +1,76 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Writes primitive values of a {@link BinarySnapshot}: variable length integers (7 bits per byte, the lowest bits
+ * first) and zig-zag encoded signed integers, so that small values - deltas in particular - take a byte or two.
+ * Not thread-safe.
+ */
+final class SnapshotOutput {
+
+    private final OutputStream out;
+
+    SnapshotOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeByte(int value) throws IOException {
+        out.write(value);
+    }
+
+    void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Writes a non-negative number.
+     */
+    void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    void writeSignedVarLong(long value) throws IOException {
+        writeVarLong(zigZag(value));
+    }
+
+    void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the given instant as microseconds since the epoch, the precision of timestamp columns.
+     */
+    void writeInstant(Instant value) throws IOException {
+        writeSignedVarLong(toEpochMicros(value));
+    }
+
+    void write(ByteArrayOutputStream bytes) throws IOException {
+        bytes.writeTo(out);
+    }
+
+    /**
+     * @return the given signed number mapped to a non-negative one: 0 to 0, -1 to 1, 1 to 2, -2 to 3 and so on
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long toEpochMicros(Instant value) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, value);
+    }
+}
@@ -0,0 +1,75 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small open addressing table resolving single-byte encoded symbols straight from raw bytes, so a symbol repeated on every line
+ * of a data file is turned into a {@link String} only once. Returned strings are interned.
+ * Not thread-safe.
+ */
+final class SymbolTable {
+
+    private String[] table = new String[16];
+    private int size;
+
+    String intern(byte[] bytes, int from, int to) {
+        int mask = table.length - 1;
+        int index = hash(bytes, from, to) & mask;
+        String symbol;
+        while ((symbol = table[index]) != null) {
+            if (matches(symbol, bytes, from, to)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+        symbol = new String(bytes, from, to - from, StandardCharsets.ISO_8859_1).intern();
+        table[index] = symbol;
+        if (++size * 2 > table.length) {
+            resize();
+        }
+        return symbol;
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String symbol : old) {
+            if (symbol != null) {
+                int index = hash(symbol) & mask;
+                while (table[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = symbol;
+            }
+        }
+    }
+
+    private static boolean matches(String symbol, byte[] bytes, int from, int to) {
+        if (symbol.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (symbol.charAt(i - from) != (char) (bytes[i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + (bytes[i] & 0xff);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(String symbol) {
+        int h = 0;
+        for (int i = 0; i < symbol.length(); i++) {
+            h = 31 * h + symbol.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,7 +3,6 @@ package pl.rationalworks.cryptorecommendationservicetest.model;
 import jakarta.persistence.*;
 import lombok.*;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
-import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -21,6 +20,7 @@ import java.time.LocalDate;
                              (max(price) - min(price)) / min(price) as normalized_factor
                       from crypto_currencies
                       where date = :date
+                        and symbol in (:symbols)
                       group by symbol)
             select AGG.*,
                    (select min(timestamp)
@@ -46,22 +46,9 @@ import java.time.LocalDate;
             from AGG;
             """,
         resultSetMapping = "dailyEvaluationFactorsMapping"),
-    @NamedNativeQuery(name = "selectNormalizedFactorsGroupBySymbol",
-        query = """
-            WITH AGG(min_price, max_price, symbol, date) AS
-                     (select min(price) as min_price, max(price) as max_price, symbol, date
-                      from crypto_currencies
-                      where DATEDIFF(DAY, :date, date) > :daysBack
-                        AND DATEDIFF(DAY, :date, date) <= 0
-                      group by symbol, date)
-            select symbol, (sum(AGG.max_price) - sum(AGG.min_price)) / sum(AGG.min_price) as normalized_factor
-            from AGG
-            group by symbol;
-            """,
-        resultSetMapping = "normalizedFactorMapping"),
     @NamedNativeQuery(name = "findDistinctDatesForUnprocessedEntries",
     query = """
-            select distinct date from crypto_currencies where processed = false
+            select distinct date from crypto_currencies where processed = false order by date
             """,
     resultClass = LocalDate.class)
 })
@@ -85,18 +72,6 @@ import java.time.LocalDate;
                 targetClass = CryptoDailyPriceFactors.class
             )
         }
-    ),
-    @SqlResultSetMapping(
-        name = "normalizedFactorMapping",
-        classes = {
-            @ConstructorResult(
-                columns = {
-                    @ColumnResult(name = "symbol", type = String.class),
-                    @ColumnResult(name = "normalized_factor", type = BigDecimal.class)
-                },
-                targetClass = NormalizedFactor.class
-            )
-        }
     )
 })
 @Entity
@@ -116,7 +91,7 @@ public class CryptoCurrency {
     private LocalDate date;
 
     @Column(name = "price", nullable = false, precision = 16, scale = 5)
-    private BigDecimal price;
+    private FixedPointPrice price;
 
     @Column(name = "processed", nullable = false)
     private boolean processed;
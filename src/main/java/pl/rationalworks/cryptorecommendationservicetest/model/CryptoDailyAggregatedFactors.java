@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+import pl.rationalworks.cryptorecommendationservicetest.repository.PeriodNormalizedFactors;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -23,8 +25,9 @@ import java.time.Instant;
                              min(oldest_price_date) as oldest_price_date,
                              max(newest_price_date) as newest_price_date
                       from daily_recent_factors
-                      where DATEDIFF(DAY, :date, reference_date) > :daysBack
-                        AND DATEDIFF(DAY, :date, reference_date) <= 0
+                      where symbol = :symbol
+                        and reference_date > :fromDate
+                        and reference_date <= :date
                       group by symbol)
             select AGG.*,
                    null                                                as factor,
@@ -40,34 +43,100 @@ import java.time.Instant;
                     from daily_recent_factors f
                     where f.symbol = AGG.symbol
                       and f.min_price = AGG.min_price
-                      AND DATEDIFF(DAY, :date, f.reference_date) > :daysBack
-                      AND DATEDIFF(DAY, :date, f.reference_date) <= 0) as min_price_date,
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as min_price_date,
                    (select max(f.max_price_date)
                     from daily_recent_factors f
                     where f.symbol = AGG.symbol
                       and f.max_price = AGG.max_price
-                      AND DATEDIFF(DAY, :date, f.reference_date) > :daysBack
-                      AND DATEDIFF(DAY, :date, f.reference_date) <= 0) as max_price_date
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as max_price_date
             FROM AGG
-            where symbol = :symbol
             """,
         resultSetMapping = "aggregatedPriceFactorsMapping"),
-    @NamedNativeQuery(name = "selectCryptosByNormalizedFactorAndPeriod",
+    @NamedNativeQuery(name = "evaluateAggregatedPriceFactorsGroupBySymbol",
         query = """
-            select f.symbol
+            WITH AGG(symbol, min_price, max_price, oldest_price_date, newest_price_date) AS
+                     (select symbol,
+                             min(min_price)         as min_price,
+                             max(max_price)         as max_price,
+                             min(oldest_price_date) as oldest_price_date,
+                             max(newest_price_date) as newest_price_date
+                      from daily_recent_factors
+                      where reference_date > :fromDate
+                        and reference_date <= :date
+                        and symbol in (:symbols)
+                      group by symbol)
+            select AGG.*,
+                   null                                                as factor,
+                   (select f.oldest_price
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.oldest_price_date = AGG.oldest_price_date
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as oldest_price,
+                   (select f.newest_price
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.newest_price_date = AGG.newest_price_date
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as newest_price,
+                   (select min(f.min_price_date)
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.min_price = AGG.min_price
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as min_price_date,
+                   (select max(f.max_price_date)
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.max_price = AGG.max_price
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date) as max_price_date
+            FROM AGG
+            ORDER BY AGG.symbol
+            """,
+        resultSetMapping = "aggregatedPriceFactorsMapping"),
+    @NamedNativeQuery(name = "selectNormalizedFactorsGroupBySymbol",
+        query = """
+            select symbol, (sum(max_price) - sum(min_price)) / sum(min_price) as normalized_factor
+            from daily_recent_factors
+            where reference_date > :fromDate
+              and reference_date <= :date
+              and symbol in (:symbols)
+            group by symbol
+            """,
+        resultSetMapping = "normalizedFactorMapping"),
+    @NamedNativeQuery(name = "selectPeriodNormalizedFactorsGroupBySymbol",
+        query = """
+            select symbol,
+                   (sum(case when reference_date > :weekFromDate then max_price end)
+                       - sum(case when reference_date > :weekFromDate then min_price end))
+                       / sum(case when reference_date > :weekFromDate then min_price end) as weekly_normalized_factor,
+                   (sum(max_price) - sum(min_price)) / sum(min_price)                    as monthly_normalized_factor
+            from daily_recent_factors
+            where reference_date > :monthFromDate
+              and reference_date <= :date
+              and symbol in (:symbols)
+            group by symbol
+            """,
+        resultSetMapping = "periodNormalizedFactorsMapping"),
+    @NamedNativeQuery(name = "selectRankingByNormalizedFactorAndPeriod",
+        query = """
+            select f.symbol,
+                   case
+                       when :period = 'DAY' then
+                           daily_normalized_factor
+                       when :period = 'WEEK' then
+                           weekly_normalized_factor
+                       when :period = 'MONTH' then
+                           monthly_normalized_factor
+                       end as normalized_factor
             from daily_recent_factors f
             where reference_date = :date
-            order by case
-                         when :period = 'DAY' then
-                             daily_normalized_factor
-                         when :period = 'WEEK' then
-                             weekly_normalized_factor
-                         when :period = 'MONTH' then
-                             monthly_normalized_factor
-                         end DESC
-            limit :lmt
+            order by normalized_factor DESC, f.symbol
             """,
-        resultClass = String.class
+        resultSetMapping = "normalizedFactorMapping"
     )
 })
 @SqlResultSetMappings({
@@ -91,6 +160,31 @@ import java.time.Instant;
                 targetClass = CryptoDailyPriceFactors.class
             )
         }
+    ),
+    @SqlResultSetMapping(
+        name = "normalizedFactorMapping",
+        classes = {
+            @ConstructorResult(
+                columns = {
+                    @ColumnResult(name = "symbol", type = String.class),
+                    @ColumnResult(name = "normalized_factor", type = BigDecimal.class)
+                },
+                targetClass = NormalizedFactor.class
+            )
+        }
+    ),
+    @SqlResultSetMapping(
+        name = "periodNormalizedFactorsMapping",
+        classes = {
+            @ConstructorResult(
+                columns = {
+                    @ColumnResult(name = "symbol", type = String.class),
+                    @ColumnResult(name = "weekly_normalized_factor", type = BigDecimal.class),
+                    @ColumnResult(name = "monthly_normalized_factor", type = BigDecimal.class)
+                },
+                targetClass = PeriodNormalizedFactors.class
+            )
+        }
     )
 })
 @Entity
@@ -104,49 +198,54 @@ public class CryptoDailyAggregatedFactors {
     @EmbeddedId
     private final DailyRecentFactorId id;
     @Column(name = "min_price", precision = 16, scale = 5)
-    private final BigDecimal minPrice;
+    private final FixedPointPrice minPrice;
     @Column(name = "min_price_date")
     private final Instant minPriceDate;
     @Column(name = "max_price", precision = 16, scale = 5)
-    private final BigDecimal maxPrice;
+    private final FixedPointPrice maxPrice;
     @Column(name = "max_price_date")
     private final Instant maxPriceDate;
     /**
      * This field stores the oldest currency price we have since the beginning of the current day (id.referenceDate)
      */
     @Column(name = "oldest_price", precision = 16, scale = 5)
-    private final BigDecimal oldestPrice;
+    private final FixedPointPrice oldestPrice;
     @Column(name = "oldest_price_date")
     private final Instant oldestPriceDate;
     /**
      * This field stores the newest currency price we have for the current day (id.referenceDate)
      */
     @Column(name = "newest_price", precision = 16, scale = 5)
-    private final BigDecimal newestPrice;
+    private final FixedPointPrice newestPrice;
     @Column(name = "newest_price_date")
     private final Instant newestPriceDate;
     @Column(name = "daily_normalized_factor", precision = 16, scale = 5)
-    private final BigDecimal dailyNormalizedFactor;
+    private final FixedPointPrice dailyNormalizedFactor;
     /**
      * This property stores a normalized weekly factor for a given currency. Here 'weekly' means a week period to date.
      * That means that this factor is calculated using a data from a 7 days back up to now (that is, the current date which is an
      * id.referenceDate).
      */
     @Column(name = "weekly_normalized_factor", precision = 16, scale = 5)
-    private final BigDecimal weeklyNormalizedFactor;
+    private final FixedPointPrice weeklyNormalizedFactor;
     /**
      * This property stores a normalized monthly factor for a given currency. Here 'monthly' means a month period to date.
      * That means that this factor is calculated using a data from a 31 days back up to now (that is, the current date which is an
      * id.referenceDate).
      */
     @Column(name = "monthly_normalized_factor", precision = 16, scale = 5)
-    private final BigDecimal monthlyNormalizedFactor;
+    private final FixedPointPrice monthlyNormalizedFactor;
 
     public CryptoDailyAggregatedFactors() {
         this(null, null, null, null, null, null, null,
             null, null, null, null, null);
     }
 
+    public CryptoDailyPriceFactors toPriceFactors() {
+        return new CryptoDailyPriceFactors(id.getSymbol(), minPrice, minPriceDate, maxPrice, maxPriceDate,
+            oldestPrice, oldestPriceDate, newestPrice, newestPriceDate, dailyNormalizedFactor);
+    }
+
     public static CryptoDailyAggregatedFactors setupDailyEvaluationFactors(DailyRecentFactorId id, CryptoDailyPriceFactors factor) {
         return CryptoDailyAggregatedFactors.builder()
             .id(id)
@@ -162,17 +261,25 @@ public class CryptoDailyAggregatedFactors {
             .build();
     }
 
-    public static CryptoDailyAggregatedFactors setupNormalizedWeeklyFactors(DailyRecentFactorId id, BigDecimal factorValue) {
+    public static CryptoDailyAggregatedFactors setupNormalizedWeeklyFactors(DailyRecentFactorId id, FixedPointPrice factorValue) {
         return CryptoDailyAggregatedFactors.builder()
             .id(id)
             .weeklyNormalizedFactor(factorValue)
             .build();
     }
 
-    public static CryptoDailyAggregatedFactors setupNormalizedMonthlyFactors(DailyRecentFactorId id, BigDecimal factorValue) {
+    public static CryptoDailyAggregatedFactors setupNormalizedMonthlyFactors(DailyRecentFactorId id, FixedPointPrice factorValue) {
         return CryptoDailyAggregatedFactors.builder()
             .id(id)
             .monthlyNormalizedFactor(factorValue)
             .build();
     }
+
+    public static CryptoDailyAggregatedFactors setupNormalizedPeriodFactors(DailyRecentFactorId id, PeriodNormalizedFactors factors) {
+        return CryptoDailyAggregatedFactors.builder()
+            .id(id)
+            .weeklyNormalizedFactor(factors.weeklyFactor())
+            .monthlyNormalizedFactor(factors.monthlyFactor())
+            .build();
+    }
 }
@@ -0,0 +1,100 @@
+package pl.rationalworks.cryptorecommendationservicetest.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Price factors of a whole period (i.e. a week or a month) ending at id.referenceDate, evaluated from the daily factors
+ * of each day of that period. Those are materialized by the scheduler, so they do not need to be aggregated
+ * on every request.
+ */
+@NamedNativeQueries({
+    @NamedNativeQuery(name = "materializePeriodPriceFactors",
+        query = """
+            MERGE INTO period_price_factors (symbol, reference_date, period,
+                                             min_price, min_price_date, max_price, max_price_date,
+                                             oldest_price, oldest_price_date, newest_price, newest_price_date)
+                KEY (symbol, reference_date, period)
+            select AGG.symbol,
+                   CAST(:date AS DATE),
+                   :period,
+                   AGG.min_price,
+                   (select min(f.min_price_date)
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.min_price = AGG.min_price
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date),
+                   AGG.max_price,
+                   (select max(f.max_price_date)
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.max_price = AGG.max_price
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date),
+                   (select f.oldest_price
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.oldest_price_date = AGG.oldest_price_date
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date),
+                   AGG.oldest_price_date,
+                   (select f.newest_price
+                    from daily_recent_factors f
+                    where f.symbol = AGG.symbol
+                      and f.newest_price_date = AGG.newest_price_date
+                      and f.reference_date > :fromDate
+                      and f.reference_date <= :date),
+                   AGG.newest_price_date
+            from (select symbol,
+                         min(min_price)         as min_price,
+                         max(max_price)         as max_price,
+                         min(oldest_price_date) as oldest_price_date,
+                         max(newest_price_date) as newest_price_date
+                  from daily_recent_factors
+                  where reference_date > :fromDate
+                    and reference_date <= :date
+                  group by symbol) AGG
+            """)
+})
+@Entity
+@Table(name = "period_price_factors")
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+public class CryptoPeriodPriceFactors {
+
+    @EmbeddedId
+    private final PeriodPriceFactorId id;
+    @Column(name = "min_price", precision = 16, scale = 5)
+    private final FixedPointPrice minPrice;
+    @Column(name = "min_price_date")
+    private final Instant minPriceDate;
+    @Column(name = "max_price", precision = 16, scale = 5)
+    private final FixedPointPrice maxPrice;
+    @Column(name = "max_price_date")
+    private final Instant maxPriceDate;
+    @Column(name = "oldest_price", precision = 16, scale = 5)
+    private final FixedPointPrice oldestPrice;
+    @Column(name = "oldest_price_date")
+    private final Instant oldestPriceDate;
+    @Column(name = "newest_price", precision = 16, scale = 5)
+    private final FixedPointPrice newestPrice;
+    @Column(name = "newest_price_date")
+    private final Instant newestPriceDate;
+
+    public CryptoPeriodPriceFactors() {
+        this(null, null, null, null, null, null, null, null, null);
+    }
+
+    public CryptoDailyPriceFactors toPriceFactors() {
+        return new CryptoDailyPriceFactors(id.getSymbol(), minPrice, minPriceDate, maxPrice, maxPriceDate,
+            oldestPrice, oldestPriceDate, newestPrice, newestPriceDate, null);
+    }
+}
@@ -0,0 +1,78 @@
+package pl.rationalworks.cryptorecommendationservicetest.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point decimal number with {@value #SCALE} fractional digits, the scale of all price and factor columns
+ * (<code>numeric(16, 5)</code>), kept as a <code>long</code> number of 10<sup>-5</sup> units. It is used for prices and
+ * factors all the way from parsing data files to the database and is converted to {@link BigDecimal} only at the
+ * boundaries (JDBC, REST).
+ * <p>
+ * Rounding: whenever a value has more fractional digits than {@value #SCALE} (parsed or converted values, results of a
+ * division), it is rounded {@link RoundingMode#HALF_UP half up}, i.e. to the nearest representable value and away from
+ * zero on ties. This is what the database does when such a value is stored in a <code>numeric(16, 5)</code> column.
+ * Values which do not fit in a <code>long</code> are rejected with an {@link ArithmeticException}.
+ *
+ * @param unscaledValue the value multiplied by 10<sup>5</sup>
+ */
+public record FixedPointPrice(long unscaledValue) implements Comparable<FixedPointPrice> {
+
+    public static final int SCALE = 5;
+    private static final long ONE = 100_000L;
+
+    public static FixedPointPrice of(BigDecimal value) {
+        return value == null ? null : new FixedPointPrice(value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static FixedPointPrice of(String value) {
+        return of(new BigDecimal(value));
+    }
+
+    /**
+     * @return the given value as a {@link BigDecimal} with the scale of {@value #SCALE} or <code>null</code>
+     */
+    public static BigDecimal toBigDecimal(FixedPointPrice value) {
+        return value == null ? null : value.toBigDecimal();
+    }
+
+    /**
+     * @return <code>dividend / divisor</code> (both given as unscaled values) rounded half up
+     */
+    public static FixedPointPrice divide(long dividend, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (Math.abs(dividend) > Long.MAX_VALUE / ONE) { // dividend * ONE would overflow
+            return of(BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), SCALE, RoundingMode.HALF_UP));
+        }
+        long scaledDividend = Math.abs(dividend) * ONE;
+        long absDivisor = Math.abs(divisor);
+        long quotient = scaledDividend / absDivisor;
+        if (2 * (scaledDividend % absDivisor) >= absDivisor) {
+            quotient++;
+        }
+        return new FixedPointPrice((dividend < 0) != (divisor < 0) ? -quotient : quotient);
+    }
+
+    /**
+     * @return normalized factor of a price range, that is <code>(max - min) / min</code>
+     */
+    public static FixedPointPrice normalizedFactor(FixedPointPrice max, FixedPointPrice min) {
+        return divide(Math.subtractExact(max.unscaledValue, min.unscaledValue), min.unscaledValue);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, SCALE);
+    }
+
+    @Override
+    public int compareTo(FixedPointPrice other) {
+        return Long.compare(unscaledValue, other.unscaledValue);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
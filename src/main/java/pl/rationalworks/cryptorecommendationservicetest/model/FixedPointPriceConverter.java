@@ -0,0 +1,23 @@
+package pl.rationalworks.cryptorecommendationservicetest.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Stores {@link FixedPointPrice} attributes in <code>numeric(16, 5)</code> columns.
+ */
+@Converter(autoApply = true)
+public class FixedPointPriceConverter implements AttributeConverter<FixedPointPrice, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(FixedPointPrice attribute) {
+        return FixedPointPrice.toBigDecimal(attribute);
+    }
+
+    @Override
+    public FixedPointPrice convertToEntityAttribute(BigDecimal dbData) {
+        return FixedPointPrice.of(dbData);
+    }
+}
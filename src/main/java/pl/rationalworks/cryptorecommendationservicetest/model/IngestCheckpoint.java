@@ -0,0 +1,33 @@
+package pl.rationalworks.cryptorecommendationservicetest.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Position in a data file up to which its content has been ingested.
+ */
+@Entity
+@Table(name = "ingest_checkpoints")
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class IngestCheckpoint {
+
+    @Id
+    @Column(name = "path", length = 1024)
+    private String path;
+
+    @Column(name = "byte_offset", nullable = false)
+    private long byteOffset;
+
+    @Column(name = "prefix_checksum", nullable = false)
+    private long prefixChecksum;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
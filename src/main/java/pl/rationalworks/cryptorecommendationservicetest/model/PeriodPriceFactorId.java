@@ -0,0 +1,33 @@
+package pl.rationalworks.cryptorecommendationservicetest.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+@Embeddable
+@Getter
+public class PeriodPriceFactorId implements Serializable {
+
+    @Column(name = "symbol", nullable = false, updatable = false)
+    private final String symbol;
+    @Column(name = "reference_date", nullable = false, updatable = false)
+    private final LocalDate referenceDate;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "period", nullable = false, updatable = false, length = 16)
+    private final FactorPeriod period;
+
+    public PeriodPriceFactorId() {
+        this(null, null, null);
+    }
+}
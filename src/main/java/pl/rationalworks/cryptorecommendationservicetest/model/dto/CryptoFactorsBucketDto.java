@@ -0,0 +1,12 @@
+package pl.rationalworks.cryptorecommendationservicetest.model.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+public record CryptoFactorsBucketDto(LocalDate date,
+                                     BigDecimal minPrice, Instant minPriceDate,
+                                     BigDecimal maxPrice, Instant maxPriceDate,
+                                     BigDecimal oldestPrice, Instant oldestPriceDate,
+                                     BigDecimal newestPrice, Instant newestPriceDate, BigDecimal normalizedFactor) {
+}
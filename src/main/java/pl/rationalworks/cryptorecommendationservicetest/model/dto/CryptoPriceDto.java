@@ -0,0 +1,21 @@
+package pl.rationalworks.cryptorecommendationservicetest.model.dto;
+
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+/**
+ * A single price record of the NDJSON price feed, the same as a line of a CSV data file.
+ * Constraints follow the <code>crypto_currencies</code> table (<code>varchar(255)</code> symbol and
+ * <code>numeric(16, 5)</code> price).
+ *
+ * @param timestamp epoch milliseconds
+ */
+public record CryptoPriceDto(@NotNull Long timestamp,
+                             @NotBlank @Size(max = 255) String symbol,
+                             @NotNull @Positive @Digits(integer = 11, fraction = 5) BigDecimal price) {
+}
@@ -0,0 +1,4 @@
+package pl.rationalworks.cryptorecommendationservicetest.model.dto;
+
+public record PriceIngestResultDto(int accepted, int rejected) {
+}
@@ -0,0 +1,6 @@
+package pl.rationalworks.cryptorecommendationservicetest.model.dto;
+
+import java.math.BigDecimal;
+
+public record RankedCryptoDto(String symbol, BigDecimal normalizedFactor) {
+}
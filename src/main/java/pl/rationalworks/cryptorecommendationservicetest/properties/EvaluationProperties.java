@@ -0,0 +1,23 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "service.evaluation")
+@Getter
+@Setter
+public class EvaluationProperties {
+
+    /**
+     * Maximum number of cryptocurrency symbols whose factors are evaluated together, by a single query.
+     */
+    private int shardSize = 100;
+
+    /**
+     * Number of symbol shards evaluated concurrently.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+}
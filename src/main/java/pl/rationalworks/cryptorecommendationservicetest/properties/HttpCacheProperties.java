@@ -0,0 +1,22 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "service.http-cache")
+@Getter
+@Setter
+public class HttpCacheProperties {
+
+    /**
+     * How long clients and shared caches may reuse responses evaluated from already processed past dates only without
+     * revalidating them. Responses about today, or any date which is not processed yet (or has no prices), must always
+     * be revalidated.
+     */
+    private Duration processedMaxAge = Duration.ofHours(1);
+}
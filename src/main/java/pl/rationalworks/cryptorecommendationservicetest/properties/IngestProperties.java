@@ -0,0 +1,54 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "service.ingest")
+@Getter
+@Setter
+public class IngestProperties {
+
+    /**
+     * Number of parsed records handed over to the persistence layer at once.
+     */
+    private int batchSize = 5000;
+
+    /**
+     * Number of rows sent to the database in a single JDBC batch.
+     */
+    private int jdbcBatchSize = 1000;
+
+    /**
+     * When enabled, daily price factors are updated with every saved batch of prices, so the scheduler does not
+     * need to evaluate them again from all prices of a day.
+     */
+    private boolean incrementalDailyFactors = true;
+
+    /**
+     * Number of data files loaded concurrently at startup.
+     */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * When enabled, the startup does not wait for the data files to be loaded and the service starts
+     * serving requests while the history is still being loaded.
+     */
+    private boolean background = false;
+
+    /**
+     * When enabled (the default), the input data directory is watched after the startup and data files created or
+     * appended later are ingested as well (only their new, complete lines).
+     */
+    private boolean watch = true;
+
+    /**
+     * Time to wait after a change in the watched directory is noticed, so that a burst of changes (i.e. a file being
+     * written) is ingested at once.
+     */
+    private Duration watchDelay = Duration.ofSeconds(1);
+}
@@ -0,0 +1,41 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "service.live-ingest")
+@Getter
+@Setter
+public class LiveIngestProperties {
+
+    /**
+     * Maximum number of received, not yet saved price records. Chunks which do not fit are rejected.
+     */
+    private int queueCapacity = 100_000;
+
+    /**
+     * Maximum number of queued records saved at once.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Maximum time a received record waits for a batch to fill up before it is saved.
+     */
+    private Duration maxBatchDelay = Duration.ofMillis(200);
+
+    /**
+     * Time to wait before saving a batch again when saving it failed for other reasons than its data (i.e. the database
+     * is not available). Doubled after each failure of the same batch.
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    /**
+     * Maximum time to wait before saving a batch again.
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(10);
+}
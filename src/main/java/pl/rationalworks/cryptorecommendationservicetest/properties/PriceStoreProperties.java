@@ -0,0 +1,24 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "service.price-store")
+@Getter
+@Setter
+public class PriceStoreProperties {
+
+    /**
+     * When enabled, saved prices are also kept in an in-memory columnar store and factors are evaluated from it
+     * instead of the database.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of prices held by a single (off-heap) segment of the store.
+     */
+    private int segmentSize = 16 * 1024;
+}
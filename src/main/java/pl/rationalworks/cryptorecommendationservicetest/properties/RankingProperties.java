@@ -0,0 +1,29 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "service.ranking")
+@Getter
+@Setter
+public class RankingProperties {
+
+    /**
+     * Maximum number of (date, period) rankings kept in memory.
+     */
+    private int cacheSize = 1000;
+
+    /**
+     * Number of cryptocurrencies of a ranking page when no <code>limit</code> is requested (JSON responses only,
+     * NDJSON responses are streamed whole by default).
+     */
+    private int defaultPageSize = 1000;
+
+    /**
+     * Upper bound of the requested <code>limit</code> of JSON responses.
+     */
+    private int maxPageSize = 10000;
+}
@@ -0,0 +1,33 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "service.requests")
+@Getter
+@Setter
+public class RequestExecutionProperties {
+
+    /**
+     * Number of requests handled concurrently. Handlers block on database queries, so it should not exceed the size
+     * of the connection pool (<code>spring.datasource.hikari.maximum-pool-size</code>).
+     */
+    private int workers = 10;
+
+    /**
+     * Maximum number of requests waiting for a worker. Requests over that limit are rejected with
+     * <code>503 Service Unavailable</code>.
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * Time after which a request which is still waiting or being handled is answered with
+     * <code>503 Service Unavailable</code>.
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+}
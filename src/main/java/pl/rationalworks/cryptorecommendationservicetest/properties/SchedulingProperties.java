@@ -0,0 +1,38 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+
+@Component
+@ConfigurationProperties(prefix = "service.scheduling")
+@Getter
+@Setter
+public class SchedulingProperties {
+
+    /**
+     * Maximum number of unprocessed dates handled by a single scheduler run. Values greater than 1 let the scheduler
+     * catch up with a backlog of unprocessed dates (i.e. after loading a long history) in bulk.
+     */
+    private int maxDatesPerTick = 1;
+
+    /**
+     * Number of dates whose daily factors are evaluated concurrently while catching up.
+     */
+    private int catchUpParallelism = 1;
+
+    /**
+     * No new date (including evaluation of its daily factors) is started once a scheduler run takes longer than this,
+     * so that consecutive runs do not overlap.
+     */
+    private Duration tickBudget = Duration.ofSeconds(15);
+
+    /**
+     * Zone of the scheduler runs, it also decides which date is today (still changing) for HTTP caching.
+     */
+    private ZoneId timezone = ZoneId.of("GMT");
+}
@@ -0,0 +1,32 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "service.snapshot")
+@Getter
+@Setter
+public class SnapshotProperties {
+
+    /**
+     * When enabled, all data is written to a binary snapshot file at shutdown (and every {@link #writeInterval}) and
+     * restored from it at startup, before data files are loaded.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Location of the snapshot file.
+     */
+    private Path path = Path.of("cryptos.snapshot");
+
+    /**
+     * Interval of writing the snapshot while the service is running.
+     */
+    private Duration writeInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,24 @@
+package pl.rationalworks.cryptorecommendationservicetest.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "service.window")
+@Getter
+@Setter
+public class WindowProperties {
+
+    /**
+     * Maximum number of cryptocurrencies whose window indexes are kept in memory. An index of a cryptocurrency with
+     * <code>n</code> days of history takes <code>O(n log n)</code> memory (roughly 350 KB for 10 years).
+     */
+    private int cacheSize = 100;
+
+    /**
+     * The longest window (in days) which can be requested.
+     */
+    private int maxDays = 3660;
+}
@@ -0,0 +1,73 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bulk write path for {@link CryptoCurrency} rows. Unlike {@link CryptoCurrencyRepository#saveAll(Iterable)} it does not
+ * go through the JPA merge (and the SELECT issued for each row with an assigned id), rows are sent as plain JDBC
+ * batches of <code>service.ingest.jdbc-batch-size</code> statements instead.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CryptoCurrencyBulkRepository {
+
+    /**
+     * Idempotent on (timestamp, symbol): loading the same price again overwrites it and makes it unprocessed again.
+     */
+    private static final String UPSERT_CRYPTO_CURRENCY = """
+        MERGE INTO crypto_currencies (timestamp, symbol, date, price, processed)
+        KEY (timestamp, symbol)
+        VALUES (?, ?, ?, ?, ?)
+        """;
+
+    /**
+     * Given prices are passed as three arrays of the same length and joined with stored ones on (timestamp, symbol).
+     */
+    private static final String FIND_REPLACED_DAYS = """
+        SELECT DISTINCT c.symbol, c.date
+        FROM crypto_currencies c
+                 JOIN TABLE(timestamp TIMESTAMP(6) WITH TIME ZONE = ?,
+                            symbol VARCHAR(255) = ?,
+                            price NUMERIC(16, 5) = ?) s
+                      ON c.timestamp = s.timestamp AND c.symbol = s.symbol
+        WHERE c.price <> s.price
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestProperties ingestProperties;
+
+    public void upsertAll(Collection<CryptoCurrency> cryptoCurrencies) {
+        jdbcTemplate.batchUpdate(UPSERT_CRYPTO_CURRENCY, cryptoCurrencies, ingestProperties.getJdbcBatchSize(),
+            (ps, cc) -> {
+                ps.setObject(1, cc.getId().getTimestamp());
+                ps.setString(2, cc.getId().getSymbol());
+                ps.setObject(3, cc.getDate());
+                ps.setBigDecimal(4, cc.getPrice().toBigDecimal());
+                ps.setBoolean(5, cc.isProcessed());
+            });
+    }
+
+    /**
+     * @return days (per symbol) on which a stored price would be overwritten with a different one by given prices
+     */
+    public Set<DailyRecentFactorId> findReplacedDays(Collection<CryptoCurrency> cryptoCurrencies) {
+        if (cryptoCurrencies.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.query(FIND_REPLACED_DAYS,
+            (rs, rowNum) -> new DailyRecentFactorId(rs.getString("symbol"), rs.getObject("date", LocalDate.class)),
+            cryptoCurrencies.stream().map(cc -> cc.getId().getTimestamp()).toArray(),
+            cryptoCurrencies.stream().map(cc -> cc.getId().getSymbol()).toArray(),
+            cryptoCurrencies.stream().map(cc -> cc.getPrice().toBigDecimal()).toArray()));
+    }
+}
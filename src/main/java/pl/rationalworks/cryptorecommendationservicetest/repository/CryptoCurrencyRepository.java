@@ -9,29 +9,44 @@ import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
 import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrencyId;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CryptoCurrencyRepository extends CrudRepository<CryptoCurrency, CryptoCurrencyId> {
 
     /**
-     * @param date date in the following format 'yyyy-MM-dd'
+     * @param date    date in the following format 'yyyy-MM-dd'
+     * @param symbols cryptocurrencies to evaluate
      * @return list of records with evaluate daily factors for particular day and cryptocurrency
      */
     @Query(name = "evaluateDailyFactorsGroupBySymbol", nativeQuery = true)
-    List<CryptoDailyPriceFactors> evaluateDailyFactors(@Param("date") LocalDate date);
+    List<CryptoDailyPriceFactors> evaluateDailyFactors(@Param("date") LocalDate date,
+                                                       @Param("symbols") Collection<String> symbols);
 
     /**
-     * @param date   a data from which to start aggregating data for evaluating a normalized factor (inclusive)
-     * @param daysBack Number of days back to calculate a normalized factor.
-     * @return list of {@link NormalizedFactor} instance for each cryptocurrency symbol
+     * @return symbols of all cryptocurrencies having prices at the given date
      */
-    @Query(name = "selectNormalizedFactorsGroupBySymbol", nativeQuery = true)
-    List<NormalizedFactor> fetchNormalizedFactors(@Param("date") LocalDate date, @Param("daysBack") int daysBack);
+    @Query(value = """
+        select distinct c.id.symbol from CryptoCurrency c where c.date = :date
+        """)
+    List<String> findSymbolsByDate(@Param("date") LocalDate date);
 
+    /**
+     * @return dates having unprocessed entries, in ascending order
+     */
     @Query(name = "findDistinctDatesForUnprocessedEntries")
     List<LocalDate> selectAllDistinctDatesForUnprocessedEntries();
 
+    /**
+     * @return dates of the given range (inclusive) having any price with the given processed flag
+     */
+    @Query(value = """
+        select distinct c.date from CryptoCurrency c where c.processed = :processed and c.date between :from and :to
+        """)
+    List<LocalDate> findDatesByProcessed(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                         @Param("processed") boolean processed);
+
     @Query(value = """
         update CryptoCurrency set processed = true where date = :date
         """)
@@ -1,11 +1,24 @@
 package pl.rationalworks.cryptorecommendationservicetest.repository;
 
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
 import java.math.BigDecimal;
 import java.time.Instant;
 
-public record CryptoDailyPriceFactors(String symbol, BigDecimal minPrice, Instant minPriceDate,
-                                      BigDecimal maxPrice, Instant maxPriceDate,
-                                      BigDecimal oldestPrice, Instant oldestPriceDate,
-                                      BigDecimal newestPrice, Instant newestPriceDate, BigDecimal dailyPriceFactor) {
+public record CryptoDailyPriceFactors(String symbol, FixedPointPrice minPrice, Instant minPriceDate,
+                                      FixedPointPrice maxPrice, Instant maxPriceDate,
+                                      FixedPointPrice oldestPrice, Instant oldestPriceDate,
+                                      FixedPointPrice newestPrice, Instant newestPriceDate, FixedPointPrice dailyPriceFactor) {
 
+    /**
+     * Used to map results of native queries.
+     */
+    public CryptoDailyPriceFactors(String symbol, BigDecimal minPrice, Instant minPriceDate,
+                                   BigDecimal maxPrice, Instant maxPriceDate,
+                                   BigDecimal oldestPrice, Instant oldestPriceDate,
+                                   BigDecimal newestPrice, Instant newestPriceDate, BigDecimal dailyPriceFactor) {
+        this(symbol, FixedPointPrice.of(minPrice), minPriceDate, FixedPointPrice.of(maxPrice), maxPriceDate,
+            FixedPointPrice.of(oldestPrice), oldestPriceDate, FixedPointPrice.of(newestPrice), newestPriceDate,
+            FixedPointPrice.of(dailyPriceFactor));
+    }
 }
@@ -0,0 +1,156 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Bulk write path for <code>daily_recent_factors</code> rows, see also {@link CryptoCurrencyBulkRepository}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DailyRecentFactorBulkRepository {
+
+    /**
+     * Merges partial daily price factors with the ones already stored for the same symbol and day, so that the row
+     * always holds factors of all prices seen so far for that day. The normalized factor is evaluated from the merged
+     * min and max prices. Columns of other periods are left untouched.
+     */
+    private static final String MERGE_DAILY_PRICE_FACTORS = """
+        MERGE INTO daily_recent_factors t
+        USING (SELECT CAST(? AS VARCHAR(255))                   AS symbol,
+                      CAST(? AS DATE)                           AS reference_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS min_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS min_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS max_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS max_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS oldest_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS oldest_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS newest_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS newest_price_date) s
+        ON t.symbol = s.symbol AND t.reference_date = s.reference_date
+        WHEN MATCHED THEN UPDATE SET
+            min_price_date          = CASE
+                                          WHEN t.min_price IS NULL OR s.min_price < t.min_price THEN s.min_price_date
+                                          WHEN s.min_price = t.min_price THEN LEAST(t.min_price_date, s.min_price_date)
+                                          ELSE t.min_price_date END,
+            min_price               = LEAST(t.min_price, s.min_price),
+            max_price_date          = CASE
+                                          WHEN t.max_price IS NULL OR s.max_price > t.max_price THEN s.max_price_date
+                                          WHEN s.max_price = t.max_price THEN GREATEST(t.max_price_date, s.max_price_date)
+                                          ELSE t.max_price_date END,
+            max_price               = GREATEST(t.max_price, s.max_price),
+            oldest_price            = CASE
+                                          WHEN t.oldest_price_date IS NULL OR s.oldest_price_date <= t.oldest_price_date
+                                              THEN s.oldest_price
+                                          ELSE t.oldest_price END,
+            oldest_price_date       = LEAST(t.oldest_price_date, s.oldest_price_date),
+            newest_price            = CASE
+                                          WHEN t.newest_price_date IS NULL OR s.newest_price_date >= t.newest_price_date
+                                              THEN s.newest_price
+                                          ELSE t.newest_price END,
+            newest_price_date       = GREATEST(t.newest_price_date, s.newest_price_date),
+            daily_normalized_factor = (GREATEST(t.max_price, s.max_price) - LEAST(t.min_price, s.min_price))
+                                          / LEAST(t.min_price, s.min_price)
+        WHEN NOT MATCHED THEN INSERT (symbol, reference_date, min_price, min_price_date, max_price, max_price_date,
+                                      oldest_price, oldest_price_date, newest_price, newest_price_date,
+                                      daily_normalized_factor)
+            VALUES (s.symbol, s.reference_date, s.min_price, s.min_price_date, s.max_price, s.max_price_date,
+                    s.oldest_price, s.oldest_price_date, s.newest_price, s.newest_price_date,
+                    (s.max_price - s.min_price) / s.min_price)
+        """;
+
+    /**
+     * Writes evaluated factors (daily, weekly and monthly columns at once). A <code>null</code> value means the factor
+     * has not been evaluated, so the stored one is kept.
+     */
+    private static final String UPSERT_FACTORS = """
+        MERGE INTO daily_recent_factors t
+        USING (SELECT CAST(? AS VARCHAR(255))                   AS symbol,
+                      CAST(? AS DATE)                           AS reference_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS min_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS min_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS max_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS max_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS oldest_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS oldest_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS newest_price,
+                      CAST(? AS TIMESTAMP(6) WITH TIME ZONE)    AS newest_price_date,
+                      CAST(? AS NUMERIC(16, 5))                 AS daily_normalized_factor,
+                      CAST(? AS NUMERIC(16, 5))                 AS weekly_normalized_factor,
+                      CAST(? AS NUMERIC(16, 5))                 AS monthly_normalized_factor) s
+        ON t.symbol = s.symbol AND t.reference_date = s.reference_date
+        WHEN MATCHED THEN UPDATE SET
+            min_price                 = COALESCE(s.min_price, t.min_price),
+            min_price_date            = COALESCE(s.min_price_date, t.min_price_date),
+            max_price                 = COALESCE(s.max_price, t.max_price),
+            max_price_date            = COALESCE(s.max_price_date, t.max_price_date),
+            oldest_price              = COALESCE(s.oldest_price, t.oldest_price),
+            oldest_price_date         = COALESCE(s.oldest_price_date, t.oldest_price_date),
+            newest_price              = COALESCE(s.newest_price, t.newest_price),
+            newest_price_date         = COALESCE(s.newest_price_date, t.newest_price_date),
+            daily_normalized_factor   = COALESCE(s.daily_normalized_factor, t.daily_normalized_factor),
+            weekly_normalized_factor  = COALESCE(s.weekly_normalized_factor, t.weekly_normalized_factor),
+            monthly_normalized_factor = COALESCE(s.monthly_normalized_factor, t.monthly_normalized_factor)
+        WHEN NOT MATCHED THEN INSERT (symbol, reference_date, min_price, min_price_date, max_price, max_price_date,
+                                      oldest_price, oldest_price_date, newest_price, newest_price_date,
+                                      daily_normalized_factor, weekly_normalized_factor, monthly_normalized_factor)
+            VALUES (s.symbol, s.reference_date, s.min_price, s.min_price_date, s.max_price, s.max_price_date,
+                    s.oldest_price, s.oldest_price_date, s.newest_price, s.newest_price_date,
+                    s.daily_normalized_factor, s.weekly_normalized_factor, s.monthly_normalized_factor)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestProperties ingestProperties;
+
+    /**
+     * @param factors daily price factors (of some prices only) for each symbol and day
+     */
+    public void mergeDailyPriceFactors(Map<DailyRecentFactorId, CryptoDailyPriceFactors> factors) {
+        jdbcTemplate.batchUpdate(MERGE_DAILY_PRICE_FACTORS, factors.entrySet(), ingestProperties.getJdbcBatchSize(),
+            (ps, entry) -> {
+                CryptoDailyPriceFactors f = entry.getValue();
+                ps.setString(1, entry.getKey().getSymbol());
+                ps.setObject(2, entry.getKey().getReferenceDate());
+                ps.setBigDecimal(3, FixedPointPrice.toBigDecimal(f.minPrice()));
+                ps.setObject(4, f.minPriceDate());
+                ps.setBigDecimal(5, FixedPointPrice.toBigDecimal(f.maxPrice()));
+                ps.setObject(6, f.maxPriceDate());
+                ps.setBigDecimal(7, FixedPointPrice.toBigDecimal(f.oldestPrice()));
+                ps.setObject(8, f.oldestPriceDate());
+                ps.setBigDecimal(9, FixedPointPrice.toBigDecimal(f.newestPrice()));
+                ps.setObject(10, f.newestPriceDate());
+            });
+    }
+
+    /**
+     * Inserts or updates given factors in a single statement batch, without reading existing rows first.
+     *
+     * @param factors evaluated factors; columns left <code>null</code> are not changed in existing rows
+     */
+    public void upsertFactors(Collection<CryptoDailyAggregatedFactors> factors) {
+        jdbcTemplate.batchUpdate(UPSERT_FACTORS, factors, ingestProperties.getJdbcBatchSize(),
+            (ps, f) -> {
+                ps.setString(1, f.getId().getSymbol());
+                ps.setObject(2, f.getId().getReferenceDate());
+                ps.setBigDecimal(3, FixedPointPrice.toBigDecimal(f.getMinPrice()));
+                ps.setObject(4, f.getMinPriceDate());
+                ps.setBigDecimal(5, FixedPointPrice.toBigDecimal(f.getMaxPrice()));
+                ps.setObject(6, f.getMaxPriceDate());
+                ps.setBigDecimal(7, FixedPointPrice.toBigDecimal(f.getOldestPrice()));
+                ps.setObject(8, f.getOldestPriceDate());
+                ps.setBigDecimal(9, FixedPointPrice.toBigDecimal(f.getNewestPrice()));
+                ps.setObject(10, f.getNewestPriceDate());
+                ps.setBigDecimal(11, FixedPointPrice.toBigDecimal(f.getDailyNormalizedFactor()));
+                ps.setBigDecimal(12, FixedPointPrice.toBigDecimal(f.getWeeklyNormalizedFactor()));
+                ps.setBigDecimal(13, FixedPointPrice.toBigDecimal(f.getMonthlyNormalizedFactor()));
+            });
+    }
+}
@@ -0,0 +1,86 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Reads the history of daily factors of a single cryptocurrency, row by row. Thanks to the (symbol, reference_date)
+ * primary key it is a single index range scan.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DailyRecentFactorRangeRepository {
+
+    private static final String SELECT_DAILY_FACTORS_RANGE = """
+        SELECT symbol, reference_date, min_price, min_price_date, max_price, max_price_date,
+               oldest_price, oldest_price_date, newest_price, newest_price_date,
+               daily_normalized_factor, weekly_normalized_factor, monthly_normalized_factor
+        FROM daily_recent_factors
+        WHERE symbol = ?
+          AND reference_date >= ?
+          AND reference_date <= ?
+        ORDER BY reference_date
+        """;
+
+    private static final String SELECT_DAILY_FACTORS_HISTORY = """
+        SELECT symbol, reference_date, min_price, min_price_date, max_price, max_price_date,
+               oldest_price, oldest_price_date, newest_price, newest_price_date,
+               daily_normalized_factor, weekly_normalized_factor, monthly_normalized_factor
+        FROM daily_recent_factors
+        WHERE symbol = ?
+        ORDER BY reference_date
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Passes daily factors of the given cryptocurrency from the given (inclusive) date range, ordered by the reference
+     * date, to the given consumer.
+     */
+    public void forEachDailyFactors(String symbol, LocalDate from, LocalDate to,
+                                    Consumer<CryptoDailyAggregatedFactors> consumer) {
+        jdbcTemplate.query(SELECT_DAILY_FACTORS_RANGE, rs -> {
+            consumer.accept(mapDailyFactors(rs));
+        }, symbol, from, to);
+    }
+
+    /**
+     * Passes all daily factors of the given cryptocurrency, ordered by the reference date, to the given consumer.
+     */
+    public void forEachDailyFactors(String symbol, Consumer<CryptoDailyAggregatedFactors> consumer) {
+        jdbcTemplate.query(SELECT_DAILY_FACTORS_HISTORY, rs -> {
+            consumer.accept(mapDailyFactors(rs));
+        }, symbol);
+    }
+
+    static CryptoDailyAggregatedFactors mapDailyFactors(ResultSet rs) throws SQLException {
+        return CryptoDailyAggregatedFactors.builder()
+            .id(new DailyRecentFactorId(rs.getString("symbol"), rs.getObject("reference_date", LocalDate.class)))
+            .minPrice(price(rs, "min_price"))
+            .minPriceDate(rs.getObject("min_price_date", Instant.class))
+            .maxPrice(price(rs, "max_price"))
+            .maxPriceDate(rs.getObject("max_price_date", Instant.class))
+            .oldestPrice(price(rs, "oldest_price"))
+            .oldestPriceDate(rs.getObject("oldest_price_date", Instant.class))
+            .newestPrice(price(rs, "newest_price"))
+            .newestPriceDate(rs.getObject("newest_price_date", Instant.class))
+            .dailyNormalizedFactor(price(rs, "daily_normalized_factor"))
+            .weeklyNormalizedFactor(price(rs, "weekly_normalized_factor"))
+            .monthlyNormalizedFactor(price(rs, "monthly_normalized_factor"))
+            .build();
+    }
+
+    private static FixedPointPrice price(ResultSet rs, String column) throws SQLException {
+        return FixedPointPrice.of(rs.getBigDecimal(column));
+    }
+}
@@ -1,6 +1,5 @@
 package pl.rationalworks.cryptorecommendationservicetest.repository;
 
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -8,57 +7,104 @@ import org.springframework.stereotype.Repository;
 import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
 import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
 
-import java.math.BigDecimal;
-import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DailyRecentFactorRepository extends CrudRepository<CryptoDailyAggregatedFactors, DailyRecentFactorId> {
-    @Modifying
-    @Query(value = """
-        UPDATE CryptoDailyAggregatedFactors f
-        SET f.minPrice = :minPrice, f.minPriceDate = :minPriceDate,
-            f.maxPrice = :maxPrice, f.maxPriceDate = :maxPriceDate,
-            f.oldestPrice = :oldestPrice, f.oldestPriceDate = :oldestPriceDate,
-            f.newestPrice = :newestPrice, f.newestPriceDate = :newestPriceDate,
-            f.dailyNormalizedFactor = :dailyNormalizedFactor
-        WHERE f.id = :id
-        """)
-    void updateMinMaxPriceFactors(@Param("id") DailyRecentFactorId id,
-                                  @Param("minPrice") BigDecimal minPrice, @Param("minPriceDate") Instant minPriceDate,
-                                  @Param("maxPrice") BigDecimal maxPrice, @Param("maxPriceDate") Instant maxPriceDate,
-                                  @Param("oldestPrice") BigDecimal oldestPrice, @Param("oldestPriceDate") Instant oldestPriceDate,
-                                  @Param("newestPrice") BigDecimal newestPrice, @Param("newestPriceDate") Instant newestPriceDate,
-                                  @Param("dailyNormalizedFactor") BigDecimal dailyNormalizedFactor);
+    /**
+     * Evaluates normalized factors over a period using the daily min and max prices already stored for each day
+     * of the period, rather than the prices themselves.
+     *
+     * @param date     the last day of the period (inclusive)
+     * @param fromDate the day before the first day of the period (exclusive)
+     * @param symbols  cryptocurrencies to evaluate
+     * @return list of {@link NormalizedFactor} instance for each cryptocurrency symbol
+     */
+    @Query(name = "selectNormalizedFactorsGroupBySymbol", nativeQuery = true)
+    List<NormalizedFactor> fetchNormalizedFactors(@Param("date") LocalDate date, @Param("fromDate") LocalDate fromDate,
+                                                  @Param("symbols") Collection<String> symbols);
 
-    @Modifying
-    @Query(value = """
-        UPDATE CryptoDailyAggregatedFactors f
-        SET f.weeklyNormalizedFactor = :factor
-        WHERE f.id = :id
-        """)
-    void updateWeeklyNormalizedFactor(@Param("id") DailyRecentFactorId id,
-                                      @Param("factor") BigDecimal weekNormalizedFactor);
+    /**
+     * Evaluates weekly and monthly normalized factors in a single pass over daily factors of the last month.
+     *
+     * @param date          the last day of both periods (inclusive)
+     * @param weekFromDate  the day before the first day of the week (exclusive)
+     * @param monthFromDate the day before the first day of the month (exclusive)
+     * @param symbols       cryptocurrencies to evaluate
+     * @return weekly and monthly normalized factors for each cryptocurrency symbol
+     */
+    @Query(name = "selectPeriodNormalizedFactorsGroupBySymbol", nativeQuery = true)
+    List<PeriodNormalizedFactors> fetchPeriodNormalizedFactors(@Param("date") LocalDate date,
+                                                               @Param("weekFromDate") LocalDate weekFromDate,
+                                                               @Param("monthFromDate") LocalDate monthFromDate,
+                                                               @Param("symbols") Collection<String> symbols);
 
-    @Modifying
+    /**
+     * @param date     the last day of the period (inclusive)
+     * @param fromDate the day before the first day of the period (exclusive)
+     * @return symbols of all cryptocurrencies having daily factors in the given period
+     */
     @Query(value = """
-        UPDATE CryptoDailyAggregatedFactors f
-        SET f.monthlyNormalizedFactor = :factor
-        WHERE f.id = :id
+        select distinct f.id.symbol from CryptoDailyAggregatedFactors f
+        where f.id.referenceDate > :fromDate and f.id.referenceDate <= :date
         """)
-    void updateMonthlyNormalizedFactor(@Param("id") DailyRecentFactorId id,
-                                       @Param("factor") BigDecimal monthlyNormalizedFactor);
+    List<String> findSymbolsInPeriod(@Param("date") LocalDate date, @Param("fromDate") LocalDate fromDate);
 
+    /**
+     * @param symbol   cryptocurrency symbol
+     * @param date     the last day of the period (inclusive)
+     * @param fromDate the day before the first day of the period (exclusive)
+     * @return price factors of the whole period
+     */
     @Query(name = "evaluateAggregatedPriceFactors", nativeQuery = true)
     Optional<CryptoDailyPriceFactors> evaluateAggregatedMinMaxPriceFactors(@Param("symbol") String symbol,
                                                                            @Param("date") LocalDate date,
-                                                                           @Param("daysBack") int daysBack);
+                                                                           @Param("fromDate") LocalDate fromDate);
+
+    /**
+     * Set-based variant of {@link #evaluateAggregatedMinMaxPriceFactors(String, LocalDate, LocalDate)}.
+     *
+     * @param symbols  cryptocurrencies to evaluate
+     * @param date     the last day of the period (inclusive)
+     * @param fromDate the day before the first day of the period (exclusive)
+     * @return price factors of the whole period for each of the given cryptocurrencies having daily factors in that
+     * period, sorted by symbol
+     */
+    @Query(name = "evaluateAggregatedPriceFactorsGroupBySymbol", nativeQuery = true)
+    List<CryptoDailyPriceFactors> evaluateAggregatedMinMaxPriceFactors(@Param("symbols") Collection<String> symbols,
+                                                                       @Param("date") LocalDate date,
+                                                                       @Param("fromDate") LocalDate fromDate);
 
+    /**
+     * @return daily factors of the given date for all cryptocurrencies, sorted by symbol
+     */
+    @Query(value = """
+        select f from CryptoDailyAggregatedFactors f
+        where f.id.referenceDate = :date
+        order by f.id.symbol
+        """)
+    List<CryptoDailyAggregatedFactors> findAllByReferenceDate(@Param("date") LocalDate date);
+
+    /**
+     * @return daily factors of the given date for the given cryptocurrencies, sorted by symbol
+     */
+    @Query(value = """
+        select f from CryptoDailyAggregatedFactors f
+        where f.id.referenceDate = :date and f.id.symbol in (:symbols)
+        order by f.id.symbol
+        """)
+    List<CryptoDailyAggregatedFactors> findAllByReferenceDate(@Param("date") LocalDate date,
+                                                              @Param("symbols") Collection<String> symbols);
 
-    @Query(name = "selectCryptosByNormalizedFactorAndPeriod", nativeQuery = true)
-    List<String> selectBestCryptosByNormalizedFactor(@Param("date") LocalDate date,
-                                                     @Param("period") String period,
-                                                     @Param("lmt") int limit);
+    /**
+     * @param date   reference date
+     * @param period name of the {@link pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod}
+     * @return normalized factors of the given period for all cryptocurrencies, sorted in descending order
+     * (ties are sorted by symbol)
+     */
+    @Query(name = "selectRankingByNormalizedFactorAndPeriod", nativeQuery = true)
+    List<NormalizedFactor> selectRanking(@Param("date") LocalDate date, @Param("period") String period);
 }
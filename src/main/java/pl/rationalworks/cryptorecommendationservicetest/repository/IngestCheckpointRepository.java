@@ -0,0 +1,9 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.IngestCheckpoint;
+
+@Repository
+public interface IngestCheckpointRepository extends CrudRepository<IngestCheckpoint, String> {
+}
@@ -1,6 +1,15 @@
 package pl.rationalworks.cryptorecommendationservicetest.repository;
 
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
 import java.math.BigDecimal;
 
-public record NormalizedFactor(String symbol, BigDecimal factorValue) {
+public record NormalizedFactor(String symbol, FixedPointPrice factorValue) {
+
+    /**
+     * Used to map results of native queries.
+     */
+    public NormalizedFactor(String symbol, BigDecimal factorValue) {
+        this(symbol, FixedPointPrice.of(factorValue));
+    }
 }
@@ -0,0 +1,15 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.math.BigDecimal;
+
+public record PeriodNormalizedFactors(String symbol, FixedPointPrice weeklyFactor, FixedPointPrice monthlyFactor) {
+
+    /**
+     * Used to map results of native queries.
+     */
+    public PeriodNormalizedFactors(String symbol, BigDecimal weeklyFactor, BigDecimal monthlyFactor) {
+        this(symbol, FixedPointPrice.of(weeklyFactor), FixedPointPrice.of(monthlyFactor));
+    }
+}
@@ -0,0 +1,56 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoPeriodPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.PeriodPriceFactorId;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PeriodPriceFactorRepository extends CrudRepository<CryptoPeriodPriceFactors, PeriodPriceFactorId> {
+
+    /**
+     * Evaluates (from daily factors) and stores price factors of a period for all cryptocurrencies at once.
+     *
+     * @param date     the last day of the period (inclusive)
+     * @param fromDate the day before the first day of the period (exclusive)
+     * @param period   name of the {@link pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod}
+     */
+    @Modifying
+    @Query(name = "materializePeriodPriceFactors", nativeQuery = true)
+    void materializePeriodPriceFactors(@Param("date") LocalDate date,
+                                       @Param("fromDate") LocalDate fromDate,
+                                       @Param("period") String period);
+
+    /**
+     * @return materialized price factors of the given period ending at the given date for all cryptocurrencies,
+     * sorted by symbol
+     */
+    @Query(value = """
+        select f from CryptoPeriodPriceFactors f
+        where f.id.referenceDate = :date and f.id.period = :period
+        order by f.id.symbol
+        """)
+    List<CryptoPeriodPriceFactors> findAllByReferenceDate(@Param("date") LocalDate date,
+                                                          @Param("period") FactorPeriod period);
+
+    /**
+     * @return materialized price factors of the given period ending at the given date for the given
+     * cryptocurrencies, sorted by symbol
+     */
+    @Query(value = """
+        select f from CryptoPeriodPriceFactors f
+        where f.id.referenceDate = :date and f.id.period = :period and f.id.symbol in (:symbols)
+        order by f.id.symbol
+        """)
+    List<CryptoPeriodPriceFactors> findAllByReferenceDate(@Param("date") LocalDate date,
+                                                          @Param("period") FactorPeriod period,
+                                                          @Param("symbols") Collection<String> symbols);
+}
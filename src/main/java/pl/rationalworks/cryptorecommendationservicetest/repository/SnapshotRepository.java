@@ -0,0 +1,151 @@
+package pl.rationalworks.cryptorecommendationservicetest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrencyId;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoPeriodPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.model.IngestCheckpoint;
+import pl.rationalworks.cryptorecommendationservicetest.model.PeriodPriceFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Reads whole tables row by row (without loading them into memory) and writes rows of tables which have no other
+ * bulk write path, for {@link pl.rationalworks.cryptorecommendationservicetest.data.BinarySnapshot}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SnapshotRepository {
+
+    private static final String SELECT_PRICES = """
+        SELECT symbol, timestamp, date, price, processed
+        FROM crypto_currencies
+        ORDER BY symbol, timestamp
+        """;
+
+    private static final String SELECT_DAILY_FACTORS = """
+        SELECT symbol, reference_date, min_price, min_price_date, max_price, max_price_date,
+               oldest_price, oldest_price_date, newest_price, newest_price_date,
+               daily_normalized_factor, weekly_normalized_factor, monthly_normalized_factor
+        FROM daily_recent_factors
+        ORDER BY symbol, reference_date
+        """;
+
+    private static final String SELECT_PERIOD_FACTORS = """
+        SELECT symbol, reference_date, period, min_price, min_price_date, max_price, max_price_date,
+               oldest_price, oldest_price_date, newest_price, newest_price_date
+        FROM period_price_factors
+        ORDER BY symbol, reference_date, period
+        """;
+
+    private static final String SELECT_CHECKPOINTS = """
+        SELECT path, byte_offset, prefix_checksum, updated_at
+        FROM ingest_checkpoints
+        """;
+
+    private static final String UPSERT_PERIOD_FACTORS = """
+        MERGE INTO period_price_factors (symbol, reference_date, period,
+                                         min_price, min_price_date, max_price, max_price_date,
+                                         oldest_price, oldest_price_date, newest_price, newest_price_date)
+        KEY (symbol, reference_date, period)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String UPSERT_CHECKPOINTS = """
+        MERGE INTO ingest_checkpoints (path, byte_offset, prefix_checksum, updated_at)
+        KEY (path)
+        VALUES (?, ?, ?, ?)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestProperties ingestProperties;
+
+    public boolean hasPrices() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM crypto_currencies)", Boolean.class));
+    }
+
+    /**
+     * Passes all prices, ordered by symbol and timestamp, to the given consumer.
+     */
+    public void forEachPrice(Consumer<CryptoCurrency> consumer) {
+        jdbcTemplate.query(SELECT_PRICES, rs -> {
+            consumer.accept(new CryptoCurrency(
+                new CryptoCurrencyId(rs.getObject("timestamp", Instant.class), rs.getString("symbol")),
+                rs.getObject("date", LocalDate.class), price(rs, "price"), rs.getBoolean("processed")));
+        });
+    }
+
+    /**
+     * Passes all daily factors, ordered by symbol and reference date, to the given consumer.
+     */
+    public void forEachDailyFactors(Consumer<CryptoDailyAggregatedFactors> consumer) {
+        jdbcTemplate.query(SELECT_DAILY_FACTORS, rs -> {
+            consumer.accept(DailyRecentFactorRangeRepository.mapDailyFactors(rs));
+        });
+    }
+
+    /**
+     * Passes all period price factors, ordered by symbol, reference date and period, to the given consumer.
+     */
+    public void forEachPeriodFactors(Consumer<CryptoPeriodPriceFactors> consumer) {
+        jdbcTemplate.query(SELECT_PERIOD_FACTORS, rs -> {
+            consumer.accept(new CryptoPeriodPriceFactors(
+                new PeriodPriceFactorId(rs.getString("symbol"), rs.getObject("reference_date", LocalDate.class),
+                    FactorPeriod.valueOf(rs.getString("period"))),
+                price(rs, "min_price"), rs.getObject("min_price_date", Instant.class),
+                price(rs, "max_price"), rs.getObject("max_price_date", Instant.class),
+                price(rs, "oldest_price"), rs.getObject("oldest_price_date", Instant.class),
+                price(rs, "newest_price"), rs.getObject("newest_price_date", Instant.class)));
+        });
+    }
+
+    public void forEachCheckpoint(Consumer<IngestCheckpoint> consumer) {
+        jdbcTemplate.query(SELECT_CHECKPOINTS, rs -> {
+            consumer.accept(new IngestCheckpoint(rs.getString("path"), rs.getLong("byte_offset"),
+                rs.getLong("prefix_checksum"), rs.getObject("updated_at", Instant.class)));
+        });
+    }
+
+    public void upsertPeriodFactors(Collection<CryptoPeriodPriceFactors> factors) {
+        jdbcTemplate.batchUpdate(UPSERT_PERIOD_FACTORS, factors, ingestProperties.getJdbcBatchSize(),
+            (ps, f) -> {
+                ps.setString(1, f.getId().getSymbol());
+                ps.setObject(2, f.getId().getReferenceDate());
+                ps.setString(3, f.getId().getPeriod().name());
+                ps.setBigDecimal(4, FixedPointPrice.toBigDecimal(f.getMinPrice()));
+                ps.setObject(5, f.getMinPriceDate());
+                ps.setBigDecimal(6, FixedPointPrice.toBigDecimal(f.getMaxPrice()));
+                ps.setObject(7, f.getMaxPriceDate());
+                ps.setBigDecimal(8, FixedPointPrice.toBigDecimal(f.getOldestPrice()));
+                ps.setObject(9, f.getOldestPriceDate());
+                ps.setBigDecimal(10, FixedPointPrice.toBigDecimal(f.getNewestPrice()));
+                ps.setObject(11, f.getNewestPriceDate());
+            });
+    }
+
+    public void upsertCheckpoints(Collection<IngestCheckpoint> checkpoints) {
+        jdbcTemplate.batchUpdate(UPSERT_CHECKPOINTS, checkpoints, ingestProperties.getJdbcBatchSize(),
+            (ps, c) -> {
+                ps.setString(1, c.getPath());
+                ps.setLong(2, c.getByteOffset());
+                ps.setLong(3, c.getPrefixChecksum());
+                ps.setObject(4, c.getUpdatedAt());
+            });
+    }
+
+    private static FixedPointPrice price(ResultSet rs, String column) throws SQLException {
+        return FixedPointPrice.of(rs.getBigDecimal(column));
+    }
+}
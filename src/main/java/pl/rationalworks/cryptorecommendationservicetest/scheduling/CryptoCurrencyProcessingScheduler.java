@@ -1,57 +1,157 @@
 package pl.rationalworks.cryptorecommendationservicetest.scheduling;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDataIngestor;
 import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.SchedulingProperties;
 import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.time.LocalDate.now;
 
+/**
+ * Processes unprocessed dates (evaluates their factors and marks their prices as processed) in ascending order.
+ * <p>
+ * A single run handles up to {@code service.scheduling.max-dates-per-tick} dates, so a backlog of unprocessed dates
+ * (i.e. after loading a long history) is caught up in bulk:
+ * <ol>
+ *     <li>daily factors of those dates are independent of each other, so (unless they are maintained
+ *     incrementally during the ingestion) they are evaluated concurrently, for
+ *     {@code service.scheduling.catch-up-parallelism} dates at a time,</li>
+ *     <li>weekly and monthly factors depend on daily factors of preceding days, so they are evaluated (together, in
+ *     a single pass) date by date, each date (together with marking its prices as processed) in its own
+ *     transaction.</li>
+ * </ol>
+ * No new date (nor daily factors of the next dates) is started once the run exceeds
+ * {@code service.scheduling.tick-budget}; remaining dates are left for the next run.
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 @ConditionalOnProperty(name = "service.scheduling.enabled", matchIfMissing = true)
-public class CryptoCurrencyProcessingScheduler {
+public class CryptoCurrencyProcessingScheduler implements DisposableBean {
+
+    static final String STAGE_TIMER = "crypto.scheduler.stage";
 
     private final CryptoCurrencyService service;
+    private final InputDataIngestor ingestor;
+    private final IngestProperties ingestProperties;
+    private final SchedulingProperties schedulingProperties;
+    private final TransactionTemplate dateTransaction;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService catchUpExecutor;
+    private final AtomicInteger unprocessedDates = new AtomicInteger();
+
+    public CryptoCurrencyProcessingScheduler(CryptoCurrencyService service, InputDataIngestor ingestor,
+                                             IngestProperties ingestProperties, SchedulingProperties schedulingProperties,
+                                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.service = service;
+        this.ingestor = ingestor;
+        this.ingestProperties = ingestProperties;
+        this.schedulingProperties = schedulingProperties;
+        this.dateTransaction = new TransactionTemplate(transactionManager);
+        this.dateTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.meterRegistry = meterRegistry;
+        this.catchUpExecutor = Executors.newFixedThreadPool(Math.max(1, schedulingProperties.getCatchUpParallelism()),
+            new CustomizableThreadFactory("catch-up-"));
+        meterRegistry.gauge("crypto.scheduler.unprocessed.dates", unprocessedDates);
+    }
 
     /**
-     * By default, scheduler should process all entries starting from the current day (today).
+     * Processes the oldest unprocessed dates (today's data if there are none), see the class description.
+     * Nothing is processed while input data files are still being loaded, otherwise partially loaded days could be
+     * marked as processed.
      */
     @Scheduled(cron = "${service.scheduling.cron}", zone = "${service.scheduling.timezone}")
     public void startCryptoProcessing() {
-        LocalDate date = now();
+        if (ingestor.isLoading()) {
+            log.info("Input data is still being loaded, skipping processing until it is finished");
+            return;
+        }
+        long deadline = System.nanoTime() + schedulingProperties.getTickBudget().toNanos();
         List<LocalDate> unprocessedDates = service.findUnprocessedDates();
         log.info("Unprocessed dates' list has {} remaining items: {}", unprocessedDates.size(), unprocessedDates);
-        if (!unprocessedDates.isEmpty()) {
-            date = unprocessedDates.get(0);
+        this.unprocessedDates.set(unprocessedDates.size());
+        List<LocalDate> dates = unprocessedDates.isEmpty()
+            ? List.of(now())
+            : unprocessedDates.subList(0, Math.min(unprocessedDates.size(), Math.max(1, schedulingProperties.getMaxDatesPerTick())));
+
+        int parallelism = Math.max(1, schedulingProperties.getCatchUpParallelism());
+        for (int i = 0; i < dates.size(); i++) {
+            if (i > 0 && System.nanoTime() > deadline) {
+                log.info("Processing time budget of {} exceeded, {} dates left for the next run",
+                    schedulingProperties.getTickBudget(), dates.size() - i);
+                break;
+            }
+            // daily factors are evaluated for as many dates as there are workers at a time, so that the budget is
+            // checked between those batches too; unless they are up-to-date already
+            if (i % parallelism == 0 && !ingestProperties.isIncrementalDailyFactors()) {
+                updateMinMaxFactors(dates.subList(i, Math.min(dates.size(), i + parallelism)));
+            }
+            processDate(dates.get(i));
+            if (!unprocessedDates.isEmpty()) {
+                this.unprocessedDates.decrementAndGet();
+            }
         }
-        updateMinMaxFactors(date);
-        evaluateWeeklyCryptosNormalizedRange(date);
-        evaluateMonthlyCryptosNormalizedRange(date);
-        setRowsAsProcessed(date);
+    }
+
+    /**
+     * Evaluates weekly and monthly factors of the given date and marks its prices as processed in a single transaction.
+     */
+    private void processDate(LocalDate date) {
+        dateTransaction.executeWithoutResult(status -> {
+            evaluateNormalizedFactors(date);
+            materializePeriodPriceFactors(date);
+            setRowsAsProcessed(date);
+        });
+    }
+
+    /**
+     * Evaluates daily factors of the given dates concurrently, each date in its own transaction.
+     */
+    private void updateMinMaxFactors(List<LocalDate> dates) {
+        if (dates.size() == 1) {
+            updateMinMaxFactors(dates.get(0));
+            return;
+        }
+        CompletableFuture.allOf(dates.stream()
+                .map(date -> CompletableFuture.runAsync(() -> updateMinMaxFactors(date), catchUpExecutor))
+                .toArray(CompletableFuture[]::new))
+            .join();
     }
 
     private void setRowsAsProcessed(LocalDate date) {
-        service.markDataAsProcessed(date);
+        runStage("MARK_DATA_AS_PROCESSED", date, () -> service.markDataAsProcessed(date));
     }
 
-    private void evaluateWeeklyCryptosNormalizedRange(LocalDate date) {
-        log.info("Scheduled task EVALUATE_NORMALIZED_WEEKLY_FACTORS for {} started ...", date);
-        service.evaluateNormalizedFactors(date, FactorPeriod.WEEK);
-        log.info("Scheduled task EVALUATE_NORMALIZED_WEEKLY_FACTORS for {} finished.", date);
+    /**
+     * Weekly and monthly factors are evaluated together, in a single pass over daily factors.
+     */
+    private void evaluateNormalizedFactors(LocalDate date) {
+        runStage("EVALUATE_NORMALIZED_FACTORS", date, () -> service.evaluateNormalizedFactors(date));
     }
 
-    private void evaluateMonthlyCryptosNormalizedRange(LocalDate date) {
-        log.info("Scheduled task EVALUATE_NORMALIZED_MONTHLY_FACTORS for {} started ...", date);
-        service.evaluateNormalizedFactors(date, FactorPeriod.MONTH);
-        log.info("Scheduled task EVALUATE_NORMALIZED_MONTHLY_FACTORS for {} finished.", date);
+    private void materializePeriodPriceFactors(LocalDate date) {
+        runStage("MATERIALIZE_PERIOD_PRICE_FACTORS", date, () -> {
+            service.materializePeriodPriceFactors(date, FactorPeriod.WEEK);
+            service.materializePeriodPriceFactors(date, FactorPeriod.MONTH);
+        });
     }
 
     /**
@@ -60,9 +160,29 @@ public class CryptoCurrencyProcessingScheduler {
      * @param date a {@link LocalDate} instance for which data processing should take place
      */
     private void updateMinMaxFactors(LocalDate date) {
-        log.info("Scheduled task UPDATE_MIN_MAX_FACTORS for {} started ...", date);
-        service.evaluateDailyFactors(date);
-        log.info("Scheduled task UPDATE_MIN_MAX_FACTORS for {} finished.", date);
+        runStage("UPDATE_MIN_MAX_FACTORS", date, () -> service.evaluateDailyFactors(date));
+    }
+
+    /**
+     * Runs a single processing stage recording its duration in the {@value #STAGE_TIMER} timer (tagged with the stage
+     * name and the outcome).
+     */
+    private void runStage(String stage, LocalDate date, Runnable task) {
+        log.info("Scheduled task {} for {} started ...", stage, date);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            task.run();
+            outcome = "success";
+        } finally {
+            sample.stop(meterRegistry.timer(STAGE_TIMER, "stage", stage, "outcome", outcome));
+        }
+        log.info("Scheduled task {} for {} finished.", stage, date);
+    }
+
+    @Override
+    public void destroy() {
+        catchUpExecutor.shutdownNow();
     }
 
 }
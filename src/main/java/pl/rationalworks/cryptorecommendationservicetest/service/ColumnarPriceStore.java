@@ -0,0 +1,192 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.properties.PriceStoreProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+import pl.rationalworks.cryptorecommendationservicetest.repository.PeriodNormalizedFactors;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory, columnar copy of all saved prices (enabled with <code>service.price-store.enabled</code>), see
+ * {@link PriceColumns}. Prices are kept as unscaled values of {@link FixedPointPrice}.
+ * <p>
+ * It answers the same questions as the factor evaluation queries of the repositories (daily factors and normalized
+ * factors of a period) with loops over primitive columns, without touching the database. Since it is filled only with
+ * prices saved by the running service, it should be used with an in-memory database only.
+ */
+@Component
+@ConditionalOnProperty(name = "service.price-store.enabled")
+public class ColumnarPriceStore {
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final int segmentSize;
+    private final Map<String, PriceColumns> columnsBySymbol = new ConcurrentHashMap<>();
+
+    public ColumnarPriceStore(PriceStoreProperties priceStoreProperties) {
+        this.segmentSize = priceStoreProperties.getSegmentSize();
+    }
+
+    /**
+     * Prices are added once they are committed to the database.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // series validated with a new version must see these prices already
+    public void onPricesSaved(PricesSavedEvent event) {
+        for (CryptoCurrency price : event.prices()) {
+            PriceColumns columns = columnsBySymbol.computeIfAbsent(price.getId().getSymbol(), s -> new PriceColumns(segmentSize));
+            synchronized (columns) {
+                columns.append(price.getId().getTimestamp().toEpochMilli(), price.getPrice().unscaledValue());
+            }
+        }
+    }
+
+    /**
+     * @return symbols of all cryptocurrencies having prices at the given date
+     */
+    public Set<String> findSymbolsByDate(LocalDate date) {
+        return findSymbols(date.minusDays(1), date);
+    }
+
+    /**
+     * @return symbols of all cryptocurrencies having prices in the period <code>(fromDate, date]</code>
+     */
+    public Set<String> findSymbols(LocalDate fromDate, LocalDate date) {
+        long from = startOf(fromDate.plusDays(1));
+        long to = startOf(date.plusDays(1));
+        Set<String> symbols = new TreeSet<>();
+        columnsBySymbol.forEach((symbol, columns) -> {
+            synchronized (columns) {
+                int index = columns.lowerBound(from);
+                if (index < columns.size() && columns.timestamp(index) < to) {
+                    symbols.add(symbol);
+                }
+            }
+        });
+        return symbols;
+    }
+
+    /**
+     * Same as {@link pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyRepository#evaluateDailyFactors(LocalDate, Collection)}.
+     */
+    public List<CryptoDailyPriceFactors> evaluateDailyFactors(LocalDate date, Collection<String> symbols) {
+        long from = startOf(date);
+        long to = startOf(date.plusDays(1));
+        List<CryptoDailyPriceFactors> factors = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            PriceColumns columns = columnsBySymbol.get(symbol);
+            if (columns == null) {
+                continue;
+            }
+            synchronized (columns) {
+                int first = columns.lowerBound(from);
+                int end = columns.lowerBound(to);
+                if (first == end) {
+                    continue;
+                }
+                int min = first;
+                int max = first;
+                for (int i = first + 1; i < end; i++) {
+                    long price = columns.price(i);
+                    if (price < columns.price(min)) { // the earliest of equal minimal prices
+                        min = i;
+                    }
+                    if (price >= columns.price(max)) { // the latest of equal maximal prices
+                        max = i;
+                    }
+                }
+                long minPrice = columns.price(min);
+                long maxPrice = columns.price(max);
+                factors.add(new CryptoDailyPriceFactors(symbol,
+                    new FixedPointPrice(minPrice), Instant.ofEpochMilli(columns.timestamp(min)),
+                    new FixedPointPrice(maxPrice), Instant.ofEpochMilli(columns.timestamp(max)),
+                    new FixedPointPrice(columns.price(first)), Instant.ofEpochMilli(columns.timestamp(first)),
+                    new FixedPointPrice(columns.price(end - 1)), Instant.ofEpochMilli(columns.timestamp(end - 1)),
+                    FixedPointPrice.divide(maxPrice - minPrice, minPrice)));
+            }
+        }
+        return factors;
+    }
+
+    /**
+     * Same as {@link pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository#fetchNormalizedFactors(LocalDate, LocalDate, Collection)}.
+     */
+    public List<NormalizedFactor> evaluateNormalizedFactors(LocalDate date, LocalDate fromDate, Collection<String> symbols) {
+        return evaluatePeriodNormalizedFactors(date, fromDate, fromDate, symbols).stream()
+            .map(f -> new NormalizedFactor(f.symbol(), f.monthlyFactor()))
+            .toList();
+    }
+
+    /**
+     * Same as {@link pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository#fetchPeriodNormalizedFactors(LocalDate, LocalDate, LocalDate, Collection)}.
+     */
+    public List<PeriodNormalizedFactors> evaluatePeriodNormalizedFactors(LocalDate date, LocalDate weekFromDate,
+                                                                         LocalDate monthFromDate, Collection<String> symbols) {
+        long weekFrom = startOf(weekFromDate.plusDays(1));
+        long from = startOf(monthFromDate.plusDays(1));
+        long to = startOf(date.plusDays(1));
+        List<PeriodNormalizedFactors> factors = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            PriceColumns columns = columnsBySymbol.get(symbol);
+            if (columns == null) {
+                continue;
+            }
+            synchronized (columns) {
+                int first = columns.lowerBound(from);
+                int end = columns.lowerBound(to);
+                if (first == end) {
+                    continue;
+                }
+                // sums of daily min and max prices, the same as sums over daily factors of the period
+                long monthMinSum = 0;
+                long monthMaxSum = 0;
+                long weekMinSum = 0;
+                long weekMaxSum = 0;
+                boolean inWeek = false;
+                int i = first;
+                while (i < end) {
+                    long dayEnd = Math.floorDiv(columns.timestamp(i), MILLIS_PER_DAY) * MILLIS_PER_DAY + MILLIS_PER_DAY;
+                    inWeek = columns.timestamp(i) >= weekFrom;
+                    long dayMin = columns.price(i);
+                    long dayMax = dayMin;
+                    for (i++; i < end && columns.timestamp(i) < dayEnd; i++) {
+                        long price = columns.price(i);
+                        dayMin = Math.min(dayMin, price);
+                        dayMax = Math.max(dayMax, price);
+                    }
+                    monthMinSum += dayMin;
+                    monthMaxSum += dayMax;
+                    if (inWeek) {
+                        weekMinSum += dayMin;
+                        weekMaxSum += dayMax;
+                    }
+                }
+                factors.add(new PeriodNormalizedFactors(symbol,
+                    inWeek ? FixedPointPrice.divide(weekMaxSum - weekMinSum, weekMinSum) : null, // the last day is the latest one
+                    FixedPointPrice.divide(monthMaxSum - monthMinSum, monthMinSum)));
+            }
+        }
+        return factors;
+    }
+
+    private static long startOf(LocalDate date) {
+        return date.toEpochDay() * MILLIS_PER_DAY;
+    }
+}
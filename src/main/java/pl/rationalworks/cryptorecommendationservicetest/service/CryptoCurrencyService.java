@@ -2,28 +2,40 @@ package pl.rationalworks.cryptorecommendationservicetest.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
 import pl.rationalworks.cryptorecommendationservicetest.model.*;
 import pl.rationalworks.cryptorecommendationservicetest.model.dto.CryptoCurrencyDto;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyBulkRepository;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyRepository;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorBulkRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRangeRepository;
 import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+import pl.rationalworks.cryptorecommendationservicetest.repository.PeriodPriceFactorRepository;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.stream.StreamSupport;
 
-import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toSet;
 
 @Service
 @Slf4j
@@ -31,9 +43,32 @@ import static java.util.stream.Collectors.toMap;
 public class CryptoCurrencyService {
 
     private final CryptoCurrencyRepository cryptoCurrencyRepository;
+    private final CryptoCurrencyBulkRepository cryptoCurrencyBulkRepository;
     private final DailyRecentFactorRepository dailyRecentFactorRepository;
+    private final DailyRecentFactorBulkRepository dailyRecentFactorBulkRepository;
+    private final DailyRecentFactorRangeRepository dailyRecentFactorRangeRepository;
+    private final PeriodPriceFactorRepository periodPriceFactorRepository;
+    private final IngestProperties ingestProperties;
+    private final RankingCache rankingCache;
+    private final WindowFactorIndexCache windowFactorIndexCache;
+    private final SymbolShardExecutor symbolShardExecutor;
+    /**
+     * Available only when <code>service.price-store.enabled</code> is set, prices are read from the database otherwise.
+     */
+    private final ObjectProvider<ColumnarPriceStore> priceStore;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    /**
+     * Saves given prices. Unless disabled with <code>service.ingest.incremental-daily-factors</code>, daily price
+     * factors of the affected days are updated with those prices in the same transaction. The merge can only widen
+     * stored min and max prices, so days on which a stored price is replaced with a different one are evaluated again
+     * from all their prices.
+     * <p>
+     * Read committed is enough: all writes are idempotent MERGE statements, and a day is evaluated again only after
+     * its row of daily factors is locked by the merge, so each query sees the prices committed by concurrent saves of
+     * that day.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void saveCryptos(List<CsvDataRecord> dataRecords) {
         List<CryptoCurrency> cryptoCurrencies = dataRecords.stream()
                 .map(r -> {
@@ -41,105 +76,196 @@ public class CryptoCurrencyService {
                     return new CryptoCurrency(id, LocalDate.ofInstant(r.timestamp(), ZoneId.of("GMT")), r.price(), false);
                 })
                 .toList();
-        cryptoCurrencyRepository.saveAll(cryptoCurrencies);
+        Set<DailyRecentFactorId> replacedDays = ingestProperties.isIncrementalDailyFactors()
+            ? cryptoCurrencyBulkRepository.findReplacedDays(cryptoCurrencies)
+            : Set.of();
+        cryptoCurrencyBulkRepository.upsertAll(cryptoCurrencies);
+        eventPublisher.publishEvent(new PricesSavedEvent(cryptoCurrencies));
+        if (ingestProperties.isIncrementalDailyFactors()) {
+            dailyRecentFactorBulkRepository.mergeDailyPriceFactors(DailyPriceFactorsAccumulator.aggregate(cryptoCurrencies));
+            replacedDays.stream()
+                .collect(groupingBy(DailyRecentFactorId::getReferenceDate, mapping(DailyRecentFactorId::getSymbol, toSet())))
+                .forEach((date, symbols) -> dailyRecentFactorBulkRepository.upsertFactors(
+                    cryptoCurrencyRepository.evaluateDailyFactors(date, symbols).stream()
+                        .map(f -> CryptoDailyAggregatedFactors.setupDailyEvaluationFactors(new DailyRecentFactorId(f.symbol(), date), f))
+                        .toList()));
+            eventPublisher.publishEvent(new FactorsUpdatedEvent(
+                cryptoCurrencies.stream().map(CryptoCurrency::getDate).collect(toSet()),
+                cryptoCurrencies.stream().map(cc -> cc.getId().getSymbol()).collect(toSet())));
+        }
     }
 
+    /**
+     * Evaluates daily factors from scratch using all prices of the given day.
+     * When daily factors are maintained incrementally during the ingestion, this is only needed to rebuild them.
+     * Symbols are evaluated in shards, see {@link SymbolShardExecutor}, and stored at once in a single transaction.
+     */
     @Transactional(isolation = Isolation.REPEATABLE_READ)
     public void evaluateDailyFactors(LocalDate date) {
-        evaluateDailyFactors(cryptoCurrencyRepository.evaluateDailyFactors(date),
-            record -> new DailyRecentFactorId(record.symbol(), date),
-            CryptoDailyAggregatedFactors::setupDailyEvaluationFactors,
-            f -> dailyRecentFactorRepository.updateMinMaxPriceFactors(f.getId(), f.getMinPrice(), f.getMinPriceDate(),
-                f.getMaxPrice(), f.getMaxPriceDate(), f.getOldestPrice(), f.getOldestPriceDate(),
-                f.getNewestPrice(), f.getNewestPriceDate(), f.getDailyNormalizedFactor())
-        );
+        ColumnarPriceStore store = priceStore.getIfAvailable();
+        Collection<String> allSymbols = store != null
+            ? store.findSymbolsByDate(date)
+            : cryptoCurrencyRepository.findSymbolsByDate(date);
+        dailyRecentFactorBulkRepository.upsertFactors(symbolShardExecutor.query(allSymbols, symbols ->
+            (store != null
+                ? store.evaluateDailyFactors(date, symbols)
+                : cryptoCurrencyRepository.evaluateDailyFactors(date, symbols)).stream()
+                .map(f -> CryptoDailyAggregatedFactors.setupDailyEvaluationFactors(new DailyRecentFactorId(f.symbol(), date), f))
+                .toList()));
+        eventPublisher.publishEvent(new FactorsUpdatedEvent(Set.of(date), Set.copyOf(allSymbols)));
     }
 
+    /**
+     * Evaluates normalized factors of the period ending at the given date. Daily factors of all days in that period
+     * must be evaluated (and committed) already. Symbols are evaluated in shards, see {@link SymbolShardExecutor}, and
+     * stored at once in a single transaction.
+     */
     @Transactional(isolation = Isolation.REPEATABLE_READ)
     public void evaluateNormalizedFactors(LocalDate date, FactorPeriod period) {
-        evaluateDailyFactors(cryptoCurrencyRepository.fetchNormalizedFactors(date, period.getDaysBack()),
-            nf -> new DailyRecentFactorId(nf.symbol(), date),
-            (fid, nf) -> {
-                if (FactorPeriod.WEEK.equals(period)) {
-                    return CryptoDailyAggregatedFactors.setupNormalizedWeeklyFactors(fid, nf.factorValue());
-                }
-                if (FactorPeriod.MONTH.equals(period)) {
-                    return CryptoDailyAggregatedFactors.setupNormalizedMonthlyFactors(fid, nf.factorValue());
-                }
-                return new CryptoDailyAggregatedFactors(); // an empty factor (be default, just in case)
-            },
-            f -> {
-                if (FactorPeriod.WEEK.equals(period)) {
-                    dailyRecentFactorRepository.updateWeeklyNormalizedFactor(f.getId(), f.getWeeklyNormalizedFactor());
-                }
-                if (FactorPeriod.MONTH.equals(period)) {
-                    dailyRecentFactorRepository.updateMonthlyNormalizedFactor(f.getId(), f.getMonthlyNormalizedFactor());
-                }
-            }
-        );
+        BiFunction<DailyRecentFactorId, FixedPointPrice, CryptoDailyAggregatedFactors> factorSupplier = switch (period) {
+            case WEEK -> CryptoDailyAggregatedFactors::setupNormalizedWeeklyFactors;
+            case MONTH -> CryptoDailyAggregatedFactors::setupNormalizedMonthlyFactors;
+            case DAY -> throw new IllegalArgumentException("Daily factors are evaluated with evaluateDailyFactors(date)");
+        };
+        LocalDate fromDate = date.plusDays(period.getDaysBack());
+        ColumnarPriceStore store = priceStore.getIfAvailable();
+        Collection<String> allSymbols = findSymbolsInPeriod(store, date, fromDate);
+        dailyRecentFactorBulkRepository.upsertFactors(symbolShardExecutor.query(allSymbols, symbols ->
+            (store != null
+                ? store.evaluateNormalizedFactors(date, fromDate, symbols)
+                : dailyRecentFactorRepository.fetchNormalizedFactors(date, fromDate, symbols)).stream()
+                .map(nf -> factorSupplier.apply(new DailyRecentFactorId(nf.symbol(), date), nf.factorValue()))
+                .toList()));
+        eventPublisher.publishEvent(new FactorsUpdatedEvent(Set.of(date), Set.copyOf(allSymbols)));
+    }
+
+    /**
+     * Evaluates weekly and monthly normalized factors of the given date at once, reading daily factors of the last
+     * month only once and writing a single row per cryptocurrency. Daily factors of all days in that month must be
+     * evaluated (and committed) already. Symbols are evaluated in shards, see {@link SymbolShardExecutor}, and stored at
+     * once in a single transaction.
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void evaluateNormalizedFactors(LocalDate date) {
+        LocalDate weekFromDate = date.plusDays(FactorPeriod.WEEK.getDaysBack());
+        LocalDate monthFromDate = date.plusDays(FactorPeriod.MONTH.getDaysBack());
+        ColumnarPriceStore store = priceStore.getIfAvailable();
+        Collection<String> allSymbols = findSymbolsInPeriod(store, date, monthFromDate);
+        dailyRecentFactorBulkRepository.upsertFactors(symbolShardExecutor.query(allSymbols, symbols ->
+            (store != null
+                ? store.evaluatePeriodNormalizedFactors(date, weekFromDate, monthFromDate, symbols)
+                : dailyRecentFactorRepository.fetchPeriodNormalizedFactors(date, weekFromDate, monthFromDate, symbols)).stream()
+                .map(f -> CryptoDailyAggregatedFactors.setupNormalizedPeriodFactors(new DailyRecentFactorId(f.symbol(), date), f))
+                .toList()));
+        eventPublisher.publishEvent(new FactorsUpdatedEvent(Set.of(date), Set.copyOf(allSymbols)));
     }
 
-    private <IN> void evaluateDailyFactors(List<IN> cryptoCurrencies,
-                                           Function<IN, DailyRecentFactorId> factorIdKeyMapperFunction,
-                                           BiFunction<DailyRecentFactorId, IN, CryptoDailyAggregatedFactors> cryptoFactorSupplier,
-                                           Consumer<CryptoDailyAggregatedFactors> updateMethodSupplier) {
-        //attach factor ids
-        Map<DailyRecentFactorId, IN> cryptosWithFactorIds = cryptoCurrencies.stream()
-            .collect(toMap(factorIdKeyMapperFunction, Function.identity()));
-        // fetch existing factors
-        Map<DailyRecentFactorId, CryptoDailyAggregatedFactors> existingFactors = fetchExistingFactors(cryptosWithFactorIds.keySet());
-
-        List<CryptoDailyAggregatedFactors> newFactors = new ArrayList<>();
-        List<CryptoDailyAggregatedFactors> toBeUpdatedFactors = new ArrayList<>();
-
-        cryptosWithFactorIds.forEach((fid, cc) -> {
-            CryptoDailyAggregatedFactors factors = cryptoFactorSupplier.apply(fid, cc);
-            if (existingFactors.containsKey(fid)) { // it's an update
-                toBeUpdatedFactors.add(factors);
-            } else { // it's an insert
-                newFactors.add(factors);
-            }
-        });
-        toBeUpdatedFactors.forEach(updateMethodSupplier);
-        dailyRecentFactorRepository.saveAll(newFactors);
+    private Collection<String> findSymbolsInPeriod(ColumnarPriceStore store, LocalDate date, LocalDate fromDate) {
+        return store != null
+            ? store.findSymbols(fromDate, date)
+            : dailyRecentFactorRepository.findSymbolsInPeriod(date, fromDate);
     }
 
-    private Map<DailyRecentFactorId, CryptoDailyAggregatedFactors> fetchExistingFactors(Iterable<DailyRecentFactorId> factorIds) {
-        Iterable<CryptoDailyAggregatedFactors> factorsById = dailyRecentFactorRepository.findAllById(factorIds);
-        return StreamSupport
-            .stream(factorsById.spliterator(), false)
-            .collect(toMap(CryptoDailyAggregatedFactors::getId, Function.identity()));
+    /**
+     * Stores price factors of the given period ending at the given date, so that they can be served without aggregating
+     * daily factors on each request. Daily factors of all days in that period must be evaluated already.
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void materializePeriodPriceFactors(LocalDate date, FactorPeriod period) {
+        periodPriceFactorRepository.materializePeriodPriceFactors(date, date.plusDays(period.getDaysBack()), period.name());
     }
 
-    public List<CryptoCurrencyDto> cryptoRanking(LocalDate date, FactorPeriod period) {
-        int noLimit = Integer.MAX_VALUE;
-        List<String> symbols = dailyRecentFactorRepository.selectBestCryptosByNormalizedFactor(date, period.name(), noLimit);
-        return symbols.stream().map(CryptoCurrencyDto::new).toList();
+    /**
+     * @param after position of the last cryptocurrency of the previous page, empty for the first page
+     * @param limit maximum number of cryptocurrencies of the page
+     * @return a page of the ranking of the given date and period, found with a binary search in the cached ranking
+     */
+    public RankingPage cryptoRanking(LocalDate date, FactorPeriod period, Optional<RankingCursor> after, int limit) {
+        List<NormalizedFactor> ranking = rankingCache.getRanking(date, period);
+        int from = after.map(cursor -> {
+            int index = Collections.binarySearch(ranking, cursor.toKey(), RankingCursor.RANKING_ORDER);
+            return index >= 0 ? index + 1 : -index - 1;
+        }).orElse(0);
+        int to = (int) Math.min(ranking.size(), (long) from + limit);
+        List<NormalizedFactor> items = ranking.subList(from, to);
+        return new RankingPage(items, to < ranking.size()
+            ? Optional.of(RankingCursor.after(items.get(items.size() - 1)))
+            : Optional.empty());
     }
 
     public Optional<CryptoDailyPriceFactors> getCryptoPriceFactors(String symbol, LocalDate date, FactorPeriod period) {
         return switch (period) {
-            case DAY -> {
-                Optional<CryptoDailyAggregatedFactors> dailyFactors = dailyRecentFactorRepository.findById(new DailyRecentFactorId(symbol, date));
-                if (dailyFactors.isPresent()) {
-                    yield dailyFactors
-                        .map(df -> new CryptoDailyPriceFactors(df.getId().getSymbol(),
-                            df.getMinPrice(), df.getMinPriceDate(), df.getMaxPrice(), df.getMaxPriceDate(),
-                            df.getOldestPrice(), df.getOldestPriceDate(),
-                            df.getNewestPrice(), df.getNewestPriceDate(), df.getDailyNormalizedFactor()));
-                } else {
-                    yield Optional.empty();
-                }
-            }
-            case WEEK, MONTH ->
-                dailyRecentFactorRepository.evaluateAggregatedMinMaxPriceFactors(symbol, date, period.getDaysBack());
+            case DAY -> dailyRecentFactorRepository.findById(new DailyRecentFactorId(symbol, date))
+                .map(CryptoDailyAggregatedFactors::toPriceFactors);
+            case WEEK, MONTH -> periodPriceFactorRepository.findById(new PeriodPriceFactorId(symbol, date, period))
+                .map(CryptoPeriodPriceFactors::toPriceFactors)
+                // not materialized (yet), i.e. the date has not been processed by the scheduler
+                .or(() -> dailyRecentFactorRepository.evaluateAggregatedMinMaxPriceFactors(symbol, date,
+                    date.plusDays(period.getDaysBack())));
         };
     }
 
+    /**
+     * Batch variant of {@link #getCryptoPriceFactors(String, LocalDate, FactorPeriod)}: reads factors of all requested
+     * cryptocurrencies with a single query. Factors of a week or a month which have not been materialized (yet) are
+     * aggregated from daily factors with another one.
+     *
+     * @param symbols cryptocurrencies to read factors of, empty for all cryptocurrencies
+     * @return price factors of those of the requested cryptocurrencies which have any, sorted by symbol
+     */
+    public List<CryptoDailyPriceFactors> getCryptoPriceFactors(Optional<Set<String>> symbols, LocalDate date, FactorPeriod period) {
+        if (period == FactorPeriod.DAY) {
+            return symbols.map(s -> dailyRecentFactorRepository.findAllByReferenceDate(date, s))
+                .orElseGet(() -> dailyRecentFactorRepository.findAllByReferenceDate(date)).stream()
+                .map(CryptoDailyAggregatedFactors::toPriceFactors)
+                .toList();
+        }
+        List<CryptoDailyPriceFactors> factors = symbols.map(s -> periodPriceFactorRepository.findAllByReferenceDate(date, period, s))
+            .orElseGet(() -> periodPriceFactorRepository.findAllByReferenceDate(date, period)).stream()
+            .map(CryptoPeriodPriceFactors::toPriceFactors)
+            .toList();
+        LocalDate fromDate = date.plusDays(period.getDaysBack());
+        // not materialized (yet), i.e. the date has not been processed by the scheduler
+        Set<String> missingSymbols = symbols.map(s -> {
+                Set<String> missing = new HashSet<>(s);
+                factors.forEach(f -> missing.remove(f.symbol()));
+                return missing;
+            })
+            .orElseGet(() -> factors.isEmpty() ? Set.copyOf(dailyRecentFactorRepository.findSymbolsInPeriod(date, fromDate)) : Set.of());
+        if (missingSymbols.isEmpty()) {
+            return factors;
+        }
+        List<CryptoDailyPriceFactors> allFactors = new ArrayList<>(factors);
+        allFactors.addAll(dailyRecentFactorRepository.evaluateAggregatedMinMaxPriceFactors(missingSymbols, date, fromDate));
+        allFactors.sort(Comparator.comparing(CryptoDailyPriceFactors::symbol));
+        return allFactors;
+    }
+
+    /**
+     * Passes price factors of the given cryptocurrency from the given (inclusive) date range, folded into buckets of
+     * the given period and ordered by date, to the given consumer. Daily factors are read with a single range scan and
+     * are not collected in memory.
+     */
+    public void forEachPriceFactorsBucket(String symbol, LocalDate from, LocalDate to, FactorPeriod bucket,
+                                          Consumer<PriceFactorsBucket> consumer) {
+        PriceFactorsSeriesAccumulator accumulator = new PriceFactorsSeriesAccumulator(bucket, consumer);
+        dailyRecentFactorRangeRepository.forEachDailyFactors(symbol, from, to, accumulator::add);
+        accumulator.finish();
+    }
+
+    /**
+     * @param date the last day of the window (inclusive)
+     * @param days number of days of the window
+     * @return price factors and the normalized factor of the given window of days, see {@link WindowFactorIndex}
+     */
+    public Optional<CryptoDailyPriceFactors> getWindowPriceFactors(String symbol, LocalDate date, int days) {
+        return windowFactorIndexCache.getIndex(symbol).window(date, days);
+    }
+
     public Optional<CryptoCurrencyDto> getBestCrypto(LocalDate date, FactorPeriod period) {
-        List<String> symbol = dailyRecentFactorRepository.selectBestCryptosByNormalizedFactor(date, period.name(), 1);
-        if (!symbol.isEmpty()) {
-            return Optional.of(new CryptoCurrencyDto(symbol.get(0)));
+        List<NormalizedFactor> ranking = rankingCache.getRanking(date, period);
+        if (!ranking.isEmpty()) {
+            return Optional.of(new CryptoCurrencyDto(ranking.get(0).symbol()));
         } else {
             return Optional.empty();
         }
@@ -149,9 +275,14 @@ public class CryptoCurrencyService {
         return cryptoCurrencyRepository.selectAllDistinctDatesForUnprocessedEntries();
     }
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    /**
+     * Marks all prices of the given date as processed. Meant to be called in the transaction which evaluates factors
+     * of that date, so it joins the caller's transaction (and its isolation level).
+     */
+    @Transactional
     public void markDataAsProcessed(LocalDate date) {
         log.info("Marking data rows as processed for {}", date);
         cryptoCurrencyRepository.markDataAsProcessed(date);
+        eventPublisher.publishEvent(new DataProcessedEvent(date));
     }
 }
@@ -0,0 +1,78 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Folds prices of a single cryptocurrency and day into min/max/oldest/newest price factors, using the same tie
+ * breaking rules as the <code>evaluateDailyFactorsGroupBySymbol</code> query (the earliest timestamp of the minimal
+ * price, the latest timestamp of the maximal price).
+ */
+final class DailyPriceFactorsAccumulator {
+
+    private final String symbol;
+    private FixedPointPrice minPrice;
+    private Instant minPriceDate;
+    private FixedPointPrice maxPrice;
+    private Instant maxPriceDate;
+    private FixedPointPrice oldestPrice;
+    private Instant oldestPriceDate;
+    private FixedPointPrice newestPrice;
+    private Instant newestPriceDate;
+
+    DailyPriceFactorsAccumulator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @return price factors for each (symbol, date) pair found in the given prices
+     */
+    static Map<DailyRecentFactorId, CryptoDailyPriceFactors> aggregate(Collection<CryptoCurrency> cryptoCurrencies) {
+        Map<DailyRecentFactorId, DailyPriceFactorsAccumulator> accumulators = new HashMap<>();
+        cryptoCurrencies.forEach(cc -> accumulators
+            .computeIfAbsent(new DailyRecentFactorId(cc.getId().getSymbol(), cc.getDate()),
+                fid -> new DailyPriceFactorsAccumulator(fid.getSymbol()))
+            .add(cc.getId().getTimestamp(), cc.getPrice()));
+        Map<DailyRecentFactorId, CryptoDailyPriceFactors> factors = new HashMap<>(accumulators.size() * 2);
+        accumulators.forEach((fid, accumulator) -> factors.put(fid, accumulator.toPriceFactors()));
+        return factors;
+    }
+
+    void add(Instant timestamp, FixedPointPrice price) {
+        int minComparison = minPrice == null ? -1 : price.compareTo(minPrice);
+        if (minComparison < 0 || (minComparison == 0 && timestamp.isBefore(minPriceDate))) {
+            minPrice = price;
+            minPriceDate = timestamp;
+        }
+        int maxComparison = maxPrice == null ? 1 : price.compareTo(maxPrice);
+        if (maxComparison > 0 || (maxComparison == 0 && timestamp.isAfter(maxPriceDate))) {
+            maxPrice = price;
+            maxPriceDate = timestamp;
+        }
+        // for the same timestamp the price added last wins, just like for the upsert of the price itself
+        if (oldestPriceDate == null || !timestamp.isAfter(oldestPriceDate)) {
+            oldestPrice = price;
+            oldestPriceDate = timestamp;
+        }
+        if (newestPriceDate == null || !timestamp.isBefore(newestPriceDate)) {
+            newestPrice = price;
+            newestPriceDate = timestamp;
+        }
+    }
+
+    /**
+     * @return accumulated factors, without the normalized factor which is evaluated once they are merged with
+     * the already stored ones
+     */
+    CryptoDailyPriceFactors toPriceFactors() {
+        return new CryptoDailyPriceFactors(symbol, minPrice, minPriceDate, maxPrice, maxPriceDate,
+            oldestPrice, oldestPriceDate, newestPrice, newestPriceDate, null);
+    }
+}
@@ -0,0 +1,11 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import java.time.LocalDate;
+
+/**
+ * Published when all prices of the given date have been marked as processed, i.e. its factors are complete.
+ * Listeners interested in committed data only should use
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.
+ */
+public record DataProcessedEvent(LocalDate date) {
+}
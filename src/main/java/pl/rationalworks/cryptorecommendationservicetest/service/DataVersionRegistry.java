@@ -0,0 +1,190 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyRepository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Tracks versions of the data (prices and factors) of each date, so that responses derived from them can be validated
+ * (see ETags) without evaluating them again.
+ * <p>
+ * Every committed change of a date (see {@link PricesSavedEvent} and {@link FactorsUpdatedEvent}) gives it a new
+ * version from a single, increasing sequence, so the highest version of a range of dates changes whenever any of
+ * them does. Dates not changed since the service started have version <code>0</code>; versions are meaningful only
+ * together with {@link #getInstanceId()}, as they start over after a restart.
+ * <p>
+ * It also knows which dates are processed (have all their prices marked as processed, see {@link DataProcessedEvent}).
+ * Dates whose state is not known yet (i.e. loaded before the service started) are looked up in the database once per
+ * range; both answers are kept until the date changes or gets processed.
+ * <p>
+ * Its listeners run after the ones of caches derived from the same data (see {@link RankingCache}), so that a new
+ * version is never given out while a stale cache entry could still be served for it.
+ */
+@Component
+@Slf4j
+public class DataVersionRegistry {
+
+    private static final int MAX_DATES_WITHOUT_PRICES = 10_000;
+
+    private final CryptoCurrencyRepository cryptoCurrencyRepository;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong lastVersion = new AtomicLong();
+    private final ConcurrentNavigableMap<LocalDate, DateVersion> dates = new ConcurrentSkipListMap<>();
+    /**
+     * Dates found to have no prices at all, kept apart from {@link #dates} and limited, so that requests for arbitrary
+     * dates do not fill the registry.
+     */
+    private final Map<LocalDate, Boolean> datesWithoutPrices = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, Boolean> eldest) {
+            return size() > MAX_DATES_WITHOUT_PRICES;
+        }
+    };
+
+    public DataVersionRegistry(CryptoCurrencyRepository cryptoCurrencyRepository) {
+        this.cryptoCurrencyRepository = cryptoCurrencyRepository;
+    }
+
+    /**
+     * @return identifier of this run of the service
+     */
+    public String getInstanceId() {
+        return Long.toString(startedAt, 36);
+    }
+
+    /**
+     * @return the highest version of dates of the given range (inclusive)
+     */
+    public DateVersion getVersion(LocalDate from, LocalDate to) {
+        DateVersion latest = new DateVersion(0, startedAt, null);
+        for (DateVersion version : dates.subMap(from, true, to, true).values()) {
+            if (version.version() > latest.version()) {
+                latest = version;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return <code>true</code> if each date of the given range (inclusive) has prices and all of them are processed
+     */
+    public boolean isProcessed(LocalDate from, LocalDate to) {
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Boolean processed = getProcessed(date);
+            if (processed == null) {
+                return lookUpProcessed(date, to);
+            }
+            if (!processed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Boolean getProcessed(LocalDate date) {
+        DateVersion version = dates.get(date);
+        if (version != null) {
+            return version.processed();
+        }
+        synchronized (datesWithoutPrices) {
+            return datesWithoutPrices.containsKey(date) ? false : null;
+        }
+    }
+
+    private boolean lookUpProcessed(LocalDate from, LocalDate to) {
+        Map<LocalDate, DateVersion> versions = new HashMap<>(dates.subMap(from, true, to, true));
+        Set<LocalDate> processedDates = new HashSet<>(cryptoCurrencyRepository.findDatesByProcessed(from, to, true));
+        Set<LocalDate> unprocessedDates = new HashSet<>(cryptoCurrencyRepository.findDatesByProcessed(from, to, false));
+        // answers are kept only for dates which have not changed in the meantime
+        for (LocalDate date : unprocessedDates) {
+            setProcessed(date, versions.get(date), false);
+        }
+        for (LocalDate date : processedDates) {
+            if (!unprocessedDates.contains(date)) {
+                setProcessed(date, versions.get(date), true);
+            }
+        }
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (unprocessedDates.contains(date)) {
+                return false;
+            }
+            if (!processedDates.contains(date)) {
+                if (!versions.containsKey(date)) {
+                    synchronized (datesWithoutPrices) {
+                        datesWithoutPrices.put(date, Boolean.TRUE);
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setProcessed(LocalDate date, DateVersion version, boolean processed) {
+        if (version == null) {
+            dates.putIfAbsent(date, new DateVersion(0, startedAt, processed));
+        } else if (version.processed() == null) {
+            dates.replace(date, version, version.withProcessed(processed));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order
+    public void onPricesSaved(PricesSavedEvent event) {
+        update(event.prices().stream().map(CryptoCurrency::getDate).collect(toSet()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order
+    public void onFactorsUpdated(FactorsUpdatedEvent event) {
+        update(event.dates());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order
+    public void onDataProcessed(DataProcessedEvent event) {
+        dates.compute(event.date(), (date, version) -> version == null
+            ? new DateVersion(0, startedAt, true)
+            : version.withProcessed(true));
+    }
+
+    private void update(Collection<LocalDate> updatedDates) {
+        long modifiedAt = System.currentTimeMillis();
+        for (LocalDate date : updatedDates) {
+            // whether the date is still processed is looked up again on demand
+            dates.put(date, new DateVersion(lastVersion.incrementAndGet(), modifiedAt, null));
+        }
+        synchronized (datesWithoutPrices) {
+            datesWithoutPrices.keySet().removeAll(updatedDates);
+        }
+        log.debug("New data versions of {}", updatedDates);
+    }
+
+    /**
+     * @param version    <code>0</code> if not changed since the service started
+     * @param modifiedAt time of the change (epoch milliseconds), the start of the service if not changed since
+     * @param processed  <code>null</code> if not known
+     */
+    public record DateVersion(long version, long modifiedAt, Boolean processed) {
+
+        DateVersion withProcessed(boolean processed) {
+            return new DateVersion(version, modifiedAt, processed);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Published whenever factors of the given cryptocurrencies stored for the given reference dates change.
+ * Listeners interested in committed data only should use
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.
+ */
+public record FactorsUpdatedEvent(Set<LocalDate> dates, Set<String> symbols) {
+}
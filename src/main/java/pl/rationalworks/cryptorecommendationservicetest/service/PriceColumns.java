@@ -0,0 +1,168 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prices of a single cryptocurrency kept as two primitive columns (epoch millis and fixed-point prices) stored in
+ * off-heap segments of a fixed size.
+ * <p>
+ * Prices are expected to be appended in time order. Anything appended out of order is kept in a small on-heap buffer
+ * and merged into the columns on the next read, which rewrites only the part of the columns from the earliest buffered
+ * timestamp on (usually a short tail of late prices) instead of sorting the whole history again. A price appended for
+ * an already present timestamp replaces the previous one (the same as saving it to the database).
+ * Not thread-safe.
+ */
+final class PriceColumns {
+
+    private final int segmentSize;
+    private final List<LongBuffer> timestamps = new ArrayList<>();
+    private final List<LongBuffer> prices = new ArrayList<>();
+    private int size;
+    private long[] pendingTimestamps = new long[0];
+    private long[] pendingPrices = new long[0];
+    private int pendingSize;
+
+    PriceColumns(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    void append(long timestamp, long price) {
+        if (size > 0 && timestamp <= timestamp(size - 1)) {
+            if (pendingSize == pendingTimestamps.length) {
+                int capacity = Math.max(16, pendingSize * 2);
+                pendingTimestamps = Arrays.copyOf(pendingTimestamps, capacity);
+                pendingPrices = Arrays.copyOf(pendingPrices, capacity);
+            }
+            pendingTimestamps[pendingSize] = timestamp;
+            pendingPrices[pendingSize] = price;
+            pendingSize++;
+        } else {
+            appendSorted(timestamp, price);
+        }
+    }
+
+    int size() {
+        mergePending();
+        return size;
+    }
+
+    long timestamp(int index) {
+        return timestamps.get(index / segmentSize).get(index % segmentSize);
+    }
+
+    long price(int index) {
+        return prices.get(index / segmentSize).get(index % segmentSize);
+    }
+
+    /**
+     * @return index of the first price with a timestamp not earlier than the given one ({@link #size()} if there is none)
+     */
+    int lowerBound(long timestamp) {
+        mergePending();
+        return search(timestamp);
+    }
+
+    private int search(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void appendSorted(long timestamp, long price) {
+        if (size == timestamps.size() * segmentSize) {
+            timestamps.add(newSegment());
+            prices.add(newSegment());
+        }
+        timestamps.get(size / segmentSize).put(size % segmentSize, timestamp);
+        prices.get(size / segmentSize).put(size % segmentSize, price);
+        size++;
+    }
+
+    /**
+     * Merges prices appended out of order into the columns. Every one of them is earlier than (or replaces) the last
+     * price of the columns at the time it was appended, so it is also later than any price of the columns with the
+     * same timestamp and replaces it.
+     */
+    private void mergePending() {
+        if (pendingSize == 0) {
+            return;
+        }
+        int[] order = new int[pendingSize];
+        for (int i = 0; i < pendingSize; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[pendingSize], 0, pendingSize);
+
+        int from = search(pendingTimestamps[order[0]]);
+        int tailSize = size - from;
+        long[] tailTimestamps = new long[tailSize];
+        long[] tailPrices = new long[tailSize];
+        for (int i = 0; i < tailSize; i++) {
+            tailTimestamps[i] = timestamp(from + i);
+            tailPrices[i] = price(from + i);
+        }
+        size = from;
+        int tail = 0;
+        int pending = 0;
+        while (tail < tailSize || pending < pendingSize) {
+            // of equal timestamps, the one of the columns goes first, so that the pending one replaces it
+            if (pending == pendingSize
+                || (tail < tailSize && tailTimestamps[tail] <= pendingTimestamps[order[pending]])) {
+                put(tailTimestamps[tail], tailPrices[tail]);
+                tail++;
+            } else {
+                put(pendingTimestamps[order[pending]], pendingPrices[order[pending]]);
+                pending++;
+            }
+        }
+        pendingSize = 0;
+    }
+
+    private void put(long timestamp, long price) {
+        if (size > 0 && timestamp(size - 1) == timestamp) {
+            prices.get((size - 1) / segmentSize).put((size - 1) % segmentSize, price);
+        } else {
+            appendSorted(timestamp, price);
+        }
+    }
+
+    /**
+     * Stable merge sort of indexes of pending prices by their timestamps, so that the latest appended price of
+     * a timestamp comes last and replaces the others.
+     */
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle);
+        mergeSort(order, buffer, middle, to);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && pendingTimestamps[order[left]] <= pendingTimestamps[order[right]])) {
+                buffer[i] = order[left++];
+            } else {
+                buffer[i] = order[right++];
+            }
+        }
+        System.arraycopy(buffer, from, order, from, to - from);
+    }
+
+    private LongBuffer newSegment() {
+        return ByteBuffer.allocateDirect(segmentSize * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
@@ -0,0 +1,19 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Price factors of a single bucket of a series, see {@link PriceFactorsSeriesAccumulator}.
+ *
+ * @param date             the first day of the bucket (the day itself, Monday of the week, the first day of the month)
+ * @param normalizedFactor normalized factor of the bucket, evaluated the same way as factors of a period are
+ */
+public record PriceFactorsBucket(LocalDate date, FixedPointPrice minPrice, Instant minPriceDate,
+                                 FixedPointPrice maxPrice, Instant maxPriceDate,
+                                 FixedPointPrice oldestPrice, Instant oldestPriceDate,
+                                 FixedPointPrice newestPrice, Instant newestPriceDate,
+                                 FixedPointPrice normalizedFactor) {
+}
@@ -0,0 +1,102 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.function.Consumer;
+
+/**
+ * Folds daily factors of a single cryptocurrency, ordered by date, into calendar buckets (days, weeks starting on
+ * Monday or months) and passes each bucket to a consumer as soon as it is complete, so that a series of any length
+ * takes constant memory. Ties are broken the same way as by the <code>evaluateAggregatedPriceFactors</code> query
+ * (the earliest date of the minimal price, the latest date of the maximal price) and the normalized factor of
+ * a bucket is <code>(sum(max) - sum(min)) / sum(min)</code> of its days, like factors of a week or a month.
+ * Not thread-safe.
+ */
+final class PriceFactorsSeriesAccumulator {
+
+    private final FactorPeriod bucket;
+    private final Consumer<PriceFactorsBucket> consumer;
+    private LocalDate bucketDate;
+    private FixedPointPrice minPrice;
+    private Instant minPriceDate;
+    private FixedPointPrice maxPrice;
+    private Instant maxPriceDate;
+    private FixedPointPrice oldestPrice;
+    private Instant oldestPriceDate;
+    private FixedPointPrice newestPrice;
+    private Instant newestPriceDate;
+    private long minPriceSum;
+    private long maxPriceSum;
+
+    PriceFactorsSeriesAccumulator(FactorPeriod bucket, Consumer<PriceFactorsBucket> consumer) {
+        this.bucket = bucket;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @param factors daily factors of a day following the day of factors added previously
+     */
+    void add(CryptoDailyAggregatedFactors factors) {
+        if (factors.getMinPrice() == null || factors.getMaxPrice() == null) {
+            return; // only normalized factors of a period have been evaluated for that day
+        }
+        LocalDate date = bucketDate(factors.getId().getReferenceDate());
+        if (!date.equals(bucketDate)) {
+            finish();
+            bucketDate = date;
+        }
+        if (minPrice == null || factors.getMinPrice().compareTo(minPrice) < 0) {
+            minPrice = factors.getMinPrice();
+            minPriceDate = factors.getMinPriceDate();
+        }
+        if (maxPrice == null || factors.getMaxPrice().compareTo(maxPrice) >= 0) {
+            maxPrice = factors.getMaxPrice();
+            maxPriceDate = factors.getMaxPriceDate();
+        }
+        if (oldestPriceDate == null) {
+            oldestPrice = factors.getOldestPrice();
+            oldestPriceDate = factors.getOldestPriceDate();
+        }
+        newestPrice = factors.getNewestPrice();
+        newestPriceDate = factors.getNewestPriceDate();
+        minPriceSum = Math.addExact(minPriceSum, factors.getMinPrice().unscaledValue());
+        maxPriceSum = Math.addExact(maxPriceSum, factors.getMaxPrice().unscaledValue());
+    }
+
+    /**
+     * Passes the last (incomplete) bucket, if any, to the consumer.
+     */
+    void finish() {
+        if (bucketDate == null) {
+            return;
+        }
+        consumer.accept(new PriceFactorsBucket(bucketDate, minPrice, minPriceDate, maxPrice, maxPriceDate,
+            oldestPrice, oldestPriceDate, newestPrice, newestPriceDate,
+            minPriceSum == 0 ? null : FixedPointPrice.normalizedFactor(new FixedPointPrice(maxPriceSum), new FixedPointPrice(minPriceSum))));
+        bucketDate = null;
+        minPrice = null;
+        minPriceDate = null;
+        maxPrice = null;
+        maxPriceDate = null;
+        oldestPrice = null;
+        oldestPriceDate = null;
+        newestPrice = null;
+        newestPriceDate = null;
+        minPriceSum = 0;
+        maxPriceSum = 0;
+    }
+
+    private LocalDate bucketDate(LocalDate date) {
+        return switch (bucket) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+
+import java.util.List;
+
+/**
+ * Published whenever prices are saved, see {@link ColumnarPriceStore}.
+ *
+ * @param prices saved prices
+ */
+public record PricesSavedEvent(List<CryptoCurrency> prices) {
+}
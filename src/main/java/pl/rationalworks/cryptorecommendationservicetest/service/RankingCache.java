@@ -0,0 +1,94 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.properties.RankingProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps rankings (cryptocurrencies sorted by their normalized factor) of the most recently used dates and periods.
+ * A ranking is evicted as soon as factors of its date are committed, see {@link FactorsUpdatedEvent}.
+ * Lookups are counted by the <code>crypto.ranking.cache.requests</code> counter tagged with <code>result</code>
+ * (<code>hit</code> or <code>miss</code>).
+ */
+@Component
+@Slf4j
+public class RankingCache {
+
+    private final DailyRecentFactorRepository dailyRecentFactorRepository;
+    private final Map<RankingKey, List<NormalizedFactor>> rankings;
+    /**
+     * Incremented on every invalidation. A ranking loaded while factors were being updated could be stale already,
+     * so it is put into the cache only if no invalidation happened in the meantime.
+     */
+    private long generation;
+    private final Counter hits;
+    private final Counter misses;
+
+    public RankingCache(DailyRecentFactorRepository dailyRecentFactorRepository, RankingProperties rankingProperties,
+                        MeterRegistry meterRegistry) {
+        this.dailyRecentFactorRepository = dailyRecentFactorRepository;
+        this.hits = meterRegistry.counter("crypto.ranking.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("crypto.ranking.cache.requests", "result", "miss");
+        int cacheSize = rankingProperties.getCacheSize();
+        this.rankings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RankingKey, List<NormalizedFactor>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        meterRegistry.gauge("crypto.ranking.cache.size", this, RankingCache::size);
+    }
+
+    /**
+     * @return all cryptocurrencies having factors for the given date, sorted by the normalized factor of the given
+     * period (descending)
+     */
+    public List<NormalizedFactor> getRanking(LocalDate date, FactorPeriod period) {
+        RankingKey key = new RankingKey(date, period);
+        long loadedGeneration;
+        synchronized (this) {
+            List<NormalizedFactor> ranking = rankings.get(key);
+            if (ranking != null) {
+                hits.increment();
+                return ranking;
+            }
+            loadedGeneration = generation;
+        }
+        misses.increment();
+        List<NormalizedFactor> ranking = List.copyOf(dailyRecentFactorRepository.selectRanking(date, period.name()));
+        synchronized (this) {
+            if (loadedGeneration == generation) {
+                rankings.put(key, ranking);
+            }
+        }
+        return ranking;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // before DataVersionRegistry gives the dates new versions
+    public synchronized void onFactorsUpdated(FactorsUpdatedEvent event) {
+        generation++;
+        rankings.keySet().removeIf(key -> event.dates().contains(key.date()));
+        log.debug("Rankings invalidated for {}", event.dates());
+    }
+
+    private synchronized int size() {
+        return rankings.size();
+    }
+
+    private record RankingKey(LocalDate date, FactorPeriod period) {
+    }
+}
@@ -0,0 +1,61 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position in a ranking: the (normalized factor, symbol) key of the last returned cryptocurrency. A page following
+ * a cursor starts right after that key, so pages stay consistent while rankings are re-evaluated and no offset has
+ * to be skipped. Cursors are passed to clients as opaque (URL-safe Base64) strings.
+ *
+ * @param factorValue normalized factor of the last returned cryptocurrency, <code>null</code> if it has none
+ * @param symbol      symbol of the last returned cryptocurrency
+ */
+public record RankingCursor(FixedPointPrice factorValue, String symbol) {
+
+    /**
+     * Order of rankings: descending by the normalized factor (missing factors last), ties sorted by symbol - the same
+     * as the order of {@link pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository#selectRanking}.
+     */
+    static final Comparator<NormalizedFactor> RANKING_ORDER = Comparator
+        .comparing(NormalizedFactor::factorValue, Comparator.nullsLast(Comparator.<FixedPointPrice>reverseOrder()))
+        .thenComparing(NormalizedFactor::symbol);
+
+    private static final char SEPARATOR = ':';
+
+    static RankingCursor after(NormalizedFactor factor) {
+        return new RankingCursor(factor.factorValue(), factor.symbol());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the given string is not a cursor returned by {@link #encode()}
+     */
+    public static RankingCursor decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(SEPARATOR);
+        if (separator < 0 || separator == decoded.length() - 1) {
+            throw new IllegalArgumentException("Malformed ranking cursor: " + cursor);
+        }
+        String factor = decoded.substring(0, separator);
+        try {
+            return new RankingCursor(factor.isEmpty() ? null : new FixedPointPrice(Long.parseLong(factor)),
+                decoded.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed ranking cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        String factor = factorValue == null ? "" : Long.toString(factorValue.unscaledValue());
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((factor + SEPARATOR + symbol).getBytes(StandardCharsets.UTF_8));
+    }
+
+    NormalizedFactor toKey() {
+        return new NormalizedFactor(symbol, factorValue);
+    }
+}
@@ -0,0 +1,13 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @param items      cryptocurrencies of the page, a view of the cached ranking (not a copy)
+ * @param nextCursor position of the following page, empty if this page is the last one
+ */
+public record RankingPage(List<NormalizedFactor> items, Optional<RankingCursor> nextCursor) {
+}
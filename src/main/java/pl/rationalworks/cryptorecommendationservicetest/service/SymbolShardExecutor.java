@@ -0,0 +1,90 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.rationalworks.cryptorecommendationservicetest.properties.EvaluationProperties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Splits cryptocurrency symbols into shards of {@code service.evaluation.shard-size} symbols and runs a read-only
+ * query for each shard in its own, short REPEATABLE_READ transaction. Shards are queried concurrently by a bounded
+ * pool of {@code service.evaluation.parallelism} workers, and their results are returned to the caller, which writes
+ * them in its own transaction - so factors of a date are stored either for all shards or for none of them.
+ * <p>
+ * Shard queries run on worker threads, so they see committed data only, not changes made by the caller's transaction.
+ * When all symbols fit into a single shard, the query is run by the calling thread and joins its transaction (if any).
+ */
+@Component
+public class SymbolShardExecutor implements DisposableBean {
+
+    private final EvaluationProperties evaluationProperties;
+    private final TransactionTemplate shardTransaction;
+    private final ExecutorService executor;
+
+    public SymbolShardExecutor(EvaluationProperties evaluationProperties, PlatformTransactionManager transactionManager) {
+        this.evaluationProperties = evaluationProperties;
+        this.shardTransaction = new TransactionTemplate(transactionManager);
+        this.shardTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.shardTransaction.setReadOnly(true);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, evaluationProperties.getParallelism()),
+            new CustomizableThreadFactory("evaluation-"));
+    }
+
+    /**
+     * Runs the given query for every shard of given symbols and waits until all of them are finished.
+     *
+     * @return results of all shards, in the order of shards (symbols sorted alphabetically)
+     * @throws RuntimeException the failure of the first failed shard
+     */
+    public <T> List<T> query(Collection<String> symbols, Function<List<String>, List<T>> shardQuery) {
+        if (symbols.isEmpty()) {
+            return List.of();
+        }
+        List<List<String>> shards = split(symbols);
+        if (shards.size() == 1) {
+            return shardTransaction.execute(status -> shardQuery.apply(shards.get(0)));
+        }
+        List<CompletableFuture<List<T>>> results = shards.stream()
+            .map(shard -> CompletableFuture.supplyAsync(
+                () -> shardTransaction.execute(status -> shardQuery.apply(shard)), executor))
+            .toList();
+        try {
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+            List<T> all = new ArrayList<>();
+            results.forEach(result -> all.addAll(result.join()));
+            return all;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<List<String>> split(Collection<String> symbols) {
+        int shardSize = Math.max(1, evaluationProperties.getShardSize());
+        List<String> sortedSymbols = symbols.stream().sorted().toList();
+        List<List<String>> shards = new ArrayList<>();
+        for (int from = 0; from < sortedSymbols.size(); from += shardSize) {
+            shards.add(sortedSymbols.subList(from, Math.min(from + shardSize, sortedSymbols.size())));
+        }
+        return shards;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
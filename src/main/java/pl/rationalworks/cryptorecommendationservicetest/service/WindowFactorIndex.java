@@ -0,0 +1,199 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable index over daily factors of a single cryptocurrency, answering price factors of any window of days in
+ * constant time:
+ * <ul>
+ *     <li>prefix sums of daily min and max prices give the normalized factor of a window,
+ *     <code>(sum(max) - sum(min)) / sum(min)</code>, the same as factors of a week or a month,</li>
+ *     <li>sparse tables (minimum/maximum of each range of 2<sup>k</sup> days) give the min and max price of a window
+ *     as the better of two overlapping ranges, with ties broken the same way as by the
+ *     <code>evaluateAggregatedPriceFactors</code> query (the earliest date of the minimal price, the latest date of
+ *     the maximal price),</li>
+ *     <li>the nearest day having factors on either side of each day gives the oldest and newest price.</li>
+ * </ul>
+ * Days are indexed by their distance from the first day having factors, days without factors are kept as gaps.
+ * Building the index takes <code>O(n log n)</code> time and memory for <code>n</code> days.
+ */
+final class WindowFactorIndex {
+
+    private static final int NONE = -1;
+
+    private final String symbol;
+    private final LocalDate firstDate;
+    private final long[] minPrices;
+    private final Instant[] minPriceDates;
+    private final long[] maxPrices;
+    private final Instant[] maxPriceDates;
+    private final FixedPointPrice[] oldestPrices;
+    private final Instant[] oldestPriceDates;
+    private final FixedPointPrice[] newestPrices;
+    private final Instant[] newestPriceDates;
+    /**
+     * Sums of min (max) prices of days preceding the day of the index.
+     */
+    private final long[] minPriceSums;
+    private final long[] maxPriceSums;
+    /**
+     * The nearest day having factors at or after (at or before) the day of the index, {@link #NONE} if there is none.
+     */
+    private final int[] nextDays;
+    private final int[] previousDays;
+    /**
+     * <code>minDays[k][i]</code> is the day with the minimal price among days <code>[i, i + 2^k)</code>,
+     * {@link #NONE} if none of them has factors.
+     */
+    private final int[][] minDays;
+    private final int[][] maxDays;
+
+    private WindowFactorIndex(String symbol, LocalDate firstDate, int days) {
+        this.symbol = symbol;
+        this.firstDate = firstDate;
+        this.minPrices = new long[days];
+        this.minPriceDates = new Instant[days];
+        this.maxPrices = new long[days];
+        this.maxPriceDates = new Instant[days];
+        this.oldestPrices = new FixedPointPrice[days];
+        this.oldestPriceDates = new Instant[days];
+        this.newestPrices = new FixedPointPrice[days];
+        this.newestPriceDates = new Instant[days];
+        this.minPriceSums = new long[days + 1];
+        this.maxPriceSums = new long[days + 1];
+        this.nextDays = new int[days];
+        this.previousDays = new int[days];
+        int levels = days == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(days);
+        this.minDays = new int[levels][];
+        this.maxDays = new int[levels][];
+    }
+
+    /**
+     * @param factors daily factors of a single cryptocurrency, ordered by the reference date
+     */
+    static WindowFactorIndex build(String symbol, List<CryptoDailyAggregatedFactors> factors) {
+        List<CryptoDailyAggregatedFactors> dailyFactors = factors.stream()
+            .filter(f -> f.getMinPrice() != null && f.getMaxPrice() != null) // only period factors were evaluated
+            .toList();
+        if (dailyFactors.isEmpty()) {
+            return new WindowFactorIndex(symbol, null, 0);
+        }
+        LocalDate firstDate = dailyFactors.get(0).getId().getReferenceDate();
+        LocalDate lastDate = dailyFactors.get(dailyFactors.size() - 1).getId().getReferenceDate();
+        WindowFactorIndex index = new WindowFactorIndex(symbol, firstDate,
+            Math.toIntExact(ChronoUnit.DAYS.between(firstDate, lastDate) + 1));
+        index.fill(dailyFactors);
+        return index;
+    }
+
+    private void fill(List<CryptoDailyAggregatedFactors> dailyFactors) {
+        int days = minPrices.length;
+        int[] leafMinDays = new int[days];
+        int[] leafMaxDays = new int[days];
+        Arrays.fill(leafMinDays, NONE);
+        Arrays.fill(leafMaxDays, NONE);
+        for (CryptoDailyAggregatedFactors f : dailyFactors) {
+            int day = (int) ChronoUnit.DAYS.between(firstDate, f.getId().getReferenceDate());
+            minPrices[day] = f.getMinPrice().unscaledValue();
+            minPriceDates[day] = f.getMinPriceDate();
+            maxPrices[day] = f.getMaxPrice().unscaledValue();
+            maxPriceDates[day] = f.getMaxPriceDate();
+            oldestPrices[day] = f.getOldestPrice();
+            oldestPriceDates[day] = f.getOldestPriceDate();
+            newestPrices[day] = f.getNewestPrice();
+            newestPriceDates[day] = f.getNewestPriceDate();
+            leafMinDays[day] = day;
+            leafMaxDays[day] = day;
+        }
+        for (int day = 0; day < days; day++) {
+            boolean present = leafMinDays[day] != NONE;
+            minPriceSums[day + 1] = Math.addExact(minPriceSums[day], present ? minPrices[day] : 0);
+            maxPriceSums[day + 1] = Math.addExact(maxPriceSums[day], present ? maxPrices[day] : 0);
+            previousDays[day] = present ? day : (day == 0 ? NONE : previousDays[day - 1]);
+        }
+        for (int day = days - 1; day >= 0; day--) {
+            nextDays[day] = leafMinDays[day] != NONE ? day : (day == days - 1 ? NONE : nextDays[day + 1]);
+        }
+        minDays[0] = leafMinDays;
+        maxDays[0] = leafMaxDays;
+        for (int k = 1; k < minDays.length; k++) {
+            int half = 1 << (k - 1);
+            int length = days - (1 << k) + 1;
+            minDays[k] = new int[length];
+            maxDays[k] = new int[length];
+            for (int i = 0; i < length; i++) {
+                minDays[k][i] = lowerMin(minDays[k - 1][i], minDays[k - 1][i + half]);
+                maxDays[k][i] = higherMax(maxDays[k - 1][i], maxDays[k - 1][i + half]);
+            }
+        }
+    }
+
+    /**
+     * @param date the last day of the window (inclusive)
+     * @param days number of days of the window
+     * @return price factors of the given window, empty if there are no factors of any of its days
+     */
+    Optional<CryptoDailyPriceFactors> window(LocalDate date, int days) {
+        if (firstDate == null) {
+            return Optional.empty();
+        }
+        long end = ChronoUnit.DAYS.between(firstDate, date);
+        long from = Math.max(end - days + 1, 0);
+        long to = Math.min(end, minPrices.length - 1L);
+        if (from > to) {
+            return Optional.empty();
+        }
+        return window((int) from, (int) to);
+    }
+
+    private Optional<CryptoDailyPriceFactors> window(int from, int to) {
+        int oldestDay = nextDays[from];
+        if (oldestDay == NONE || oldestDay > to) {
+            return Optional.empty();
+        }
+        int newestDay = previousDays[to];
+        int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        int minDay = lowerMin(minDays[k][from], minDays[k][to - (1 << k) + 1]);
+        int maxDay = higherMax(maxDays[k][from], maxDays[k][to - (1 << k) + 1]);
+        long minPriceSum = minPriceSums[to + 1] - minPriceSums[from];
+        long maxPriceSum = maxPriceSums[to + 1] - maxPriceSums[from];
+        return Optional.of(new CryptoDailyPriceFactors(symbol,
+            new FixedPointPrice(minPrices[minDay]), minPriceDates[minDay],
+            new FixedPointPrice(maxPrices[maxDay]), maxPriceDates[maxDay],
+            oldestPrices[oldestDay], oldestPriceDates[oldestDay],
+            newestPrices[newestDay], newestPriceDates[newestDay],
+            minPriceSum == 0 ? null : FixedPointPrice.divide(maxPriceSum - minPriceSum, minPriceSum)));
+    }
+
+    /**
+     * @return number of days (including gaps) of the index
+     */
+    int size() {
+        return minPrices.length;
+    }
+
+    private int lowerMin(int a, int b) {
+        if (a == NONE || b == NONE) {
+            return a == NONE ? b : a;
+        }
+        int comparison = Long.compare(minPrices[a], minPrices[b]);
+        return comparison < 0 || (comparison == 0 && !minPriceDates[b].isBefore(minPriceDates[a])) ? a : b;
+    }
+
+    private int higherMax(int a, int b) {
+        if (a == NONE || b == NONE) {
+            return a == NONE ? b : a;
+        }
+        int comparison = Long.compare(maxPrices[a], maxPrices[b]);
+        return comparison > 0 || (comparison == 0 && !maxPriceDates[b].isAfter(maxPriceDates[a])) ? a : b;
+    }
+}
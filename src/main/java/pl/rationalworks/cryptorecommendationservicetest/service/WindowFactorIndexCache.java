@@ -0,0 +1,91 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.properties.WindowProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRangeRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@link WindowFactorIndex window indexes} of the most recently used cryptocurrencies. An index is built from
+ * the whole history of daily factors of its cryptocurrency on first use, and dropped as soon as factors of that
+ * cryptocurrency are committed (see {@link FactorsUpdatedEvent}), to be rebuilt lazily.
+ * Lookups are counted by the <code>crypto.window.cache.requests</code> counter tagged with <code>result</code>
+ * (<code>hit</code> or <code>miss</code>).
+ */
+@Component
+@Slf4j
+public class WindowFactorIndexCache {
+
+    private final DailyRecentFactorRangeRepository dailyRecentFactorRangeRepository;
+    private final Map<String, WindowFactorIndex> indexes;
+    /**
+     * Incremented on every invalidation of a cryptocurrency, see {@link RankingCache}. Tracked per cryptocurrency, so
+     * that frequent updates of some do not keep indexes of the others out of the cache.
+     */
+    private final Map<String, Long> generations = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public WindowFactorIndexCache(DailyRecentFactorRangeRepository dailyRecentFactorRangeRepository,
+                                  WindowProperties windowProperties, MeterRegistry meterRegistry) {
+        this.dailyRecentFactorRangeRepository = dailyRecentFactorRangeRepository;
+        this.hits = meterRegistry.counter("crypto.window.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("crypto.window.cache.requests", "result", "miss");
+        int cacheSize = windowProperties.getCacheSize();
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WindowFactorIndex> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        meterRegistry.gauge("crypto.window.cache.size", this, WindowFactorIndexCache::size);
+    }
+
+    WindowFactorIndex getIndex(String symbol) {
+        long loadedGeneration;
+        synchronized (this) {
+            WindowFactorIndex index = indexes.get(symbol);
+            if (index != null) {
+                hits.increment();
+                return index;
+            }
+            loadedGeneration = generations.getOrDefault(symbol, 0L);
+        }
+        misses.increment();
+        List<CryptoDailyAggregatedFactors> factors = new ArrayList<>();
+        dailyRecentFactorRangeRepository.forEachDailyFactors(symbol, factors::add);
+        WindowFactorIndex index = WindowFactorIndex.build(symbol, factors);
+        log.debug("Built window index of {} days of {}", index.size(), symbol);
+        synchronized (this) {
+            if (loadedGeneration == generations.getOrDefault(symbol, 0L)) {
+                indexes.put(symbol, index);
+            }
+        }
+        return index;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // see RankingCache
+    public synchronized void onFactorsUpdated(FactorsUpdatedEvent event) {
+        for (String symbol : event.symbols()) {
+            generations.merge(symbol, 1L, Long::sum);
+            indexes.remove(symbol);
+        }
+    }
+
+    private synchronized int size() {
+        return indexes.size();
+    }
+}
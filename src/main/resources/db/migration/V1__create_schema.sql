@@ -0,0 +1,38 @@
+create table crypto_currencies
+(
+    symbol    varchar(255)                not null,
+    timestamp timestamp(6) with time zone not null,
+    date      date                        not null,
+    price     numeric(16, 5)              not null,
+    processed boolean                     not null,
+    primary key (symbol, timestamp)
+);
+
+-- covers the daily aggregation (filtered by date, grouped by symbol, looking up prices and timestamps)
+-- as well as marking rows of a given date as processed
+create index idx_crypto_currencies_date_symbol on crypto_currencies (date, symbol, price, timestamp);
+
+-- H2 has no partial indexes; with processed leading, looking for unprocessed dates only reads the unprocessed part
+create index idx_crypto_currencies_processed_date on crypto_currencies (processed, date);
+
+create table daily_recent_factors
+(
+    symbol                    varchar(255) not null,
+    reference_date            date         not null,
+    min_price                 numeric(16, 5),
+    min_price_date            timestamp(6) with time zone,
+    max_price                 numeric(16, 5),
+    max_price_date            timestamp(6) with time zone,
+    oldest_price              numeric(16, 5),
+    oldest_price_date         timestamp(6) with time zone,
+    newest_price              numeric(16, 5),
+    newest_price_date         timestamp(6) with time zone,
+    daily_normalized_factor   numeric(16, 5),
+    weekly_normalized_factor  numeric(16, 5),
+    monthly_normalized_factor numeric(16, 5),
+    -- symbol first, so that the history of a single symbol is a range scan
+    primary key (symbol, reference_date)
+);
+
+-- rankings and period aggregations select all symbols of a date (range)
+create index idx_daily_recent_factors_reference_date on daily_recent_factors (reference_date);
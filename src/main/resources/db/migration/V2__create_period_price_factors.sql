@@ -0,0 +1,16 @@
+-- price factors of whole periods (WEEK, MONTH) ending at reference_date, materialized by the scheduler
+create table period_price_factors
+(
+    symbol            varchar(255) not null,
+    reference_date    date         not null,
+    period            varchar(16)  not null,
+    min_price         numeric(16, 5),
+    min_price_date    timestamp(6) with time zone,
+    max_price         numeric(16, 5),
+    max_price_date    timestamp(6) with time zone,
+    oldest_price      numeric(16, 5),
+    oldest_price_date timestamp(6) with time zone,
+    newest_price      numeric(16, 5),
+    newest_price_date timestamp(6) with time zone,
+    primary key (symbol, reference_date, period)
+);
@@ -0,0 +1,12 @@
+-- how far each data file has been ingested, so that only data appended later is loaded again
+create table ingest_checkpoints
+(
+    path            varchar(1024)               not null,
+    -- offset right after the last ingested line
+    byte_offset     bigint                      not null,
+    -- CRC32 of the first and the last 4 KiB of the file content before byte_offset (all of it if shorter),
+    -- to detect replaced files
+    prefix_checksum bigint                      not null,
+    updated_at      timestamp(6) with time zone not null,
+    primary key (path)
+);
@@ -0,0 +1,91 @@
+package pl.rationalworks.cryptorecommendationservicetest.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.rationalworks.cryptorecommendationservicetest.properties.RequestExecutionProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestExecutorTest {
+
+    private RequestExecutor requestExecutor;
+
+    @BeforeEach
+    void setUp() {
+        RequestExecutionProperties properties = new RequestExecutionProperties();
+        properties.setWorkers(1);
+        properties.setTimeout(Duration.ofMillis(200));
+        requestExecutor = new RequestExecutor(properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        requestExecutor.destroy();
+    }
+
+    @Test
+    void shouldInterruptRunningHandlerWhichTimedOut() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> running = requestExecutor.supply(() -> {
+            try {
+                Thread.sleep(60_000);
+                return "late";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertTimedOut(running);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals("next", requestExecutor.supply(() -> "next").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldNotRunQueuedHandlerWhichTimedOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean queuedHandlerRun = new AtomicBoolean();
+        requestExecutor.supply(() -> {
+            // keeps the only worker busy, whether interrupted or not
+            while (true) {
+                try {
+                    if (release.await(10, TimeUnit.SECONDS)) {
+                        return "released";
+                    }
+                } catch (InterruptedException e) {
+                    // still busy
+                }
+            }
+        });
+
+        CompletableFuture<String> queued = requestExecutor.supply(() -> {
+            queuedHandlerRun.set(true);
+            return "late";
+        });
+
+        assertTimedOut(queued);
+        release.countDown();
+        assertEquals("next", requestExecutor.supply(() -> "next").get(10, TimeUnit.SECONDS));
+        assertFalse(queuedHandlerRun.get());
+    }
+
+    private static void assertTimedOut(CompletableFuture<String> future) {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+    }
+}
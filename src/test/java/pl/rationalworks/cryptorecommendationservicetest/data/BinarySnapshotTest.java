@@ -0,0 +1,112 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.repository.SnapshotRepository;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:snapshot-test",
+    "service.snapshot.enabled=true",
+    "service.scheduling.enabled=false",
+    "service.ingest.watch=false"
+})
+class BinarySnapshotTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2022-01-07");
+    private static final Path SNAPSHOT = createTempDirectory().resolve("cryptos.snapshot");
+
+    @Autowired
+    private BinarySnapshot snapshot;
+    @Autowired
+    private SnapshotRepository snapshotRepository;
+    @Autowired
+    private CryptoCurrencyService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void snapshotPath(DynamicPropertyRegistry registry) {
+        registry.add("service.snapshot.path", SNAPSHOT::toString);
+    }
+
+    @BeforeEach
+    void setUp() {
+        // all kinds of data: processed and unprocessed prices, daily, normalized and period factors, checkpoints
+        service.evaluateNormalizedFactors(DATE);
+        service.materializePeriodPriceFactors(DATE, FactorPeriod.WEEK);
+        service.markDataAsProcessed(DATE);
+    }
+
+    @Test
+    void shouldRestoreWrittenData() {
+        List<Object> data = dump();
+        assertTrue(data.stream().anyMatch(row -> row instanceof CryptoCurrency price && price.isProcessed()));
+        snapshot.write();
+
+        clearDatabase();
+        snapshot.restore();
+
+        assertEquals(data, dump());
+    }
+
+    @Test
+    void shouldRestoreNothingFromTruncatedSnapshot() throws IOException {
+        List<Object> data = dump();
+        snapshot.write();
+        byte[] bytes = Files.readAllBytes(SNAPSHOT);
+        Files.write(SNAPSHOT, Arrays.copyOf(bytes, bytes.length * 3 / 4)); // cut in the factors sections
+
+        clearDatabase();
+        snapshot.restore();
+
+        assertFalse(snapshotRepository.hasPrices());
+        assertEquals(List.of(), dump());
+
+        Files.write(SNAPSHOT, bytes);
+        snapshot.restore();
+        assertEquals(data, dump());
+    }
+
+    private List<Object> dump() {
+        List<Object> data = new ArrayList<>();
+        snapshotRepository.forEachPrice(data::add);
+        snapshotRepository.forEachDailyFactors(data::add);
+        snapshotRepository.forEachPeriodFactors(data::add);
+        snapshotRepository.forEachCheckpoint(data::add);
+        return data;
+    }
+
+    private void clearDatabase() {
+        for (String table : List.of("crypto_currencies", "daily_recent_factors", "period_price_factors", "ingest_checkpoints")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    private static Path createTempDirectory() {
+        try {
+            return Files.createTempDirectory("snapshot-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
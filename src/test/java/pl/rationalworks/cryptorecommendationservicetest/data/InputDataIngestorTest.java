@@ -0,0 +1,143 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.rationalworks.cryptorecommendationservicetest.model.IngestCheckpoint;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.IngestCheckpointRepository;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InputDataIngestorTest {
+
+    private static final String HEADER = "timestamp,symbol,price\n";
+
+    @TempDir
+    private Path directory;
+    private final CryptoCurrencyService service = mock(CryptoCurrencyService.class);
+    private final IngestCheckpointRepository checkpointRepository = mock(IngestCheckpointRepository.class);
+    private final Map<String, IngestCheckpoint> checkpoints = new HashMap<>();
+    private final List<Instant> saved = new ArrayList<>();
+    private final IngestProperties ingestProperties = new IngestProperties();
+    private InputDataIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        when(checkpointRepository.findById(anyString())).thenAnswer(invocation ->
+            Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0))));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+            IngestCheckpoint checkpoint = invocation.getArgument(0);
+            checkpoints.put(checkpoint.getPath(), checkpoint);
+            return checkpoint;
+        });
+        doAnswer(invocation -> {
+            invocation.<List<CsvDataRecord>>getArgument(0).forEach(r -> saved.add(r.timestamp()));
+            return null;
+        }).when(service).saveCryptos(anyList());
+        ingestProperties.setBatchSize(10);
+        ingestor = new InputDataIngestor(new InputDataLoader(), service, ingestProperties, checkpointRepository,
+            new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldResumeFromCheckpoint() throws IOException {
+        Path file = directory.resolve("ETH_values.csv");
+        Files.writeString(file, HEADER + lines(0, 3));
+        assertEquals(3, ingestor.ingestNewData(file));
+
+        Files.writeString(file, lines(3, 5), StandardOpenOption.APPEND);
+        saved.clear();
+
+        assertEquals(2, ingestor.ingestNewData(file));
+        assertEquals(timestamps(3, 5), saved);
+        assertEquals(0, ingestor.ingestNewData(file));
+    }
+
+    @Test
+    void shouldLoadTruncatedFileFromBeginning() throws IOException {
+        Path file = directory.resolve("ETH_values.csv");
+        Files.writeString(file, HEADER + lines(0, 3));
+        ingestor.ingestNewData(file);
+
+        Files.writeString(file, HEADER + lines(10, 12));
+        saved.clear();
+
+        assertEquals(2, ingestor.ingestNewData(file));
+        assertEquals(timestamps(10, 12), saved);
+    }
+
+    @Test
+    void shouldLoadFileFromBeginningWhenFirstOrLastBlockBeforeCheckpointChanged() throws IOException {
+        Path file = directory.resolve("ETH_values.csv");
+        String content = HEADER + lines(0, 500); // well over two checksum blocks
+        Files.writeString(file, content);
+        assertEquals(500, ingestor.ingestNewData(file));
+
+        // the same length, a different price of the first record
+        Files.writeString(file, content.replaceFirst(",ETH,1\n", ",ETH,2\n"));
+        assertEquals(500, ingestor.ingestNewData(file));
+
+        // the same length, a different price of the last record
+        Files.writeString(file, content.substring(0, content.length() - 2) + "3\n");
+        assertEquals(500, ingestor.ingestNewData(file));
+    }
+
+    @Test
+    void shouldLoadLastLineWithoutTerminatorOnceFileStoppedChanging() throws IOException {
+        Path file = directory.resolve("ETH_values.csv");
+        Files.writeString(file, HEADER + lines(0, 2) + "1641024002000,ETH,1");
+
+        assertEquals(2, ingestor.ingestNewData(file)); // the last line might still be written
+        assertEquals(Set.of(file), ingestor.getFilesWithIncompleteLastLine());
+
+        assertEquals(1, ingestor.ingestNewData(file)); // not changed since
+        assertEquals(Set.of(), ingestor.getFilesWithIncompleteLastLine());
+        assertEquals(timestamps(0, 3), saved);
+    }
+
+    @Test
+    void shouldLoadLastLineWithoutTerminatorOfFilesWhichAreNotWatched() throws IOException {
+        ingestProperties.setWatch(false);
+        Path file = directory.resolve("ETH_values.csv");
+        Files.writeString(file, HEADER + lines(0, 2) + "1641024002000,ETH,1");
+
+        ingestor.ingest(List.of(file)).join();
+
+        assertEquals(timestamps(0, 3), saved);
+    }
+
+    private static String lines(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> (1641024000000L + i * 1000L) + ",ETH,1\n")
+            .collect(Collectors.joining());
+    }
+
+    private static List<Instant> timestamps(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> Instant.ofEpochMilli(1641024000000L + i * 1000L))
+            .toList();
+    }
+}
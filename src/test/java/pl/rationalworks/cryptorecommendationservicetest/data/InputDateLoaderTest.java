@@ -1,10 +1,19 @@
 package pl.rationalworks.cryptorecommendationservicetest.data;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -31,4 +40,94 @@ public class InputDateLoaderTest {
         }
     }
 
+    @Test
+    void shouldPushRecordsInFixedSizeBatches() throws IOException, URISyntaxException {
+        Path path = Path.of(getClass().getResource("/ETH_values_test.csv").toURI());
+        // a tiny read buffer forces lines to be split between consecutive reads
+        InputDataLoader inputDataLoader = new InputDataLoader(32);
+        List<List<CsvDataRecord>> batches = new ArrayList<>();
+
+        long count = inputDataLoader.loadFromFile(path, 2, batches::add);
+
+        assertThat(count, is(5L));
+        assertThat(batches.stream().map(List::size).toList(), contains(2, 2, 1));
+        List<CsvDataRecord> records = batches.stream().flatMap(List::stream).toList();
+        assertThat(records.get(0), is(new CsvDataRecord(Instant.parse("2022-01-01T08:00:00Z"), "ETH", FixedPointPrice.of("3715.32"))));
+        assertThat(records.get(4), is(new CsvDataRecord(Instant.parse("2022-01-02T02:00:00Z"), "ETH", FixedPointPrice.of("3747"))));
+        assertThat(records.get(0).symbol(), sameInstance(records.get(4).symbol()));
+    }
+
+    @Test
+    void shouldRoundPricesHalfUpToFiveFractionalDigits() throws IOException {
+        String csv = """
+                timestamp,symbol,price
+                1641009600000,ETH,0.123455
+                1641013200000,ETH,0.1234549
+                1641016800000,ETH,12.999995
+                1641020400000,ETH,1234567890123.4567891
+                """;
+        try (InputStream inputStream = new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))) {
+            List<FixedPointPrice> prices = new InputDataLoader().loadFromFile(inputStream).stream()
+                    .map(CsvDataRecord::price)
+                    .toList();
+            assertThat(prices, contains(
+                    FixedPointPrice.of("0.12346"),
+                    FixedPointPrice.of("0.12345"),
+                    FixedPointPrice.of("13.00000"),
+                    FixedPointPrice.of("1234567890123.45679")
+            ));
+        }
+    }
+
+    @Test
+    void shouldSkipFirstLineOnlyIfItIsHeader() throws IOException {
+        String csv = """
+                1641009600000,ETH,3715.32
+                1641013200000,ETH,3718.67
+                """;
+        try (InputStream inputStream = new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))) {
+            assertThat(new InputDataLoader().loadFromFile(inputStream), hasSize(2));
+        }
+    }
+
+    @Test
+    void shouldStopReadingOnceMaxRecordsAreLoaded() throws IOException {
+        String csv = """
+                timestamp,symbol,price
+                1641009600000,ETH,3715.32
+                1641013200000,ETH,3718.67
+                1641016800000,ETH,3720.00
+                """ + "malformed\n".repeat(100);
+        try (InputStream inputStream = new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))) {
+            List<CsvDataRecord> records = new InputDataLoader(32).loadFromFile(inputStream, 2);
+
+            assertThat(records, hasSize(2));
+            assertThat(records.get(1).timestamp(), is(Instant.ofEpochMilli(1641013200000L)));
+            assertThat(inputStream.available(), greaterThan(0));
+        }
+    }
+
+    @Test
+    void shouldLoadOnlyCompleteLinesAppendedSincePreviousLoad(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("ETH_values.csv");
+        Files.writeString(file, "timestamp,symbol,price\n1641024000000,ETH,3715.32\n1641031200000,ETH,37");
+        InputDataLoader inputDataLoader = new InputDataLoader(32);
+        List<CsvDataRecord> records = new ArrayList<>();
+
+        long offset = inputDataLoader.loadCompleteLines(file, 0, 10, records::addAll);
+
+        assertThat(offset, is(49L)); // the last line is still being written
+        assertThat(records, contains(new CsvDataRecord(Instant.parse("2022-01-01T08:00:00Z"), "ETH", FixedPointPrice.of("3715.32"))));
+
+        Files.writeString(file, "18.67\n1641049200000,ETH,3697.04\n", StandardOpenOption.APPEND);
+        records.clear();
+        offset = inputDataLoader.loadCompleteLines(file, offset, 10, records::addAll);
+
+        assertThat(offset, is(Files.size(file)));
+        assertThat(records, contains(
+                new CsvDataRecord(Instant.parse("2022-01-01T10:00:00Z"), "ETH", FixedPointPrice.of("3718.67")),
+                new CsvDataRecord(Instant.parse("2022-01-01T15:00:00Z"), "ETH", FixedPointPrice.of("3697.04"))
+        ));
+    }
+
 }
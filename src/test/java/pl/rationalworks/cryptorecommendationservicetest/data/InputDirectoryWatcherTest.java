@@ -0,0 +1,49 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InputDirectoryWatcherTest {
+
+    @TempDir
+    private Path directory;
+    private final InputDataIngestor ingestor = mock(InputDataIngestor.class);
+    private InputDirectoryWatcher watcher;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.destroy();
+    }
+
+    @Test
+    void shouldIngestCreatedFilesAndRecheckFilesWithIncompleteLastLine() throws IOException {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setWatchDelay(Duration.ofMillis(50));
+        watcher = new InputDirectoryWatcher(ingestor, ingestProperties);
+        watcher.register(directory);
+        watcher.start();
+        Path file = directory.resolve("ETH_values.csv");
+        Path incompleteFile = directory.resolve("BTC_values.csv");
+        Files.writeString(incompleteFile, "timestamp,symbol,price\n1641024000000,BTC,4");
+        when(ingestor.getFilesWithIncompleteLastLine()).thenReturn(Set.of(incompleteFile));
+
+        Files.writeString(file, "timestamp,symbol,price\n1641024000000,ETH,1\n");
+
+        verify(ingestor, timeout(10_000).atLeastOnce()).ingestNewData(file);
+        verify(ingestor, timeout(10_000).atLeast(2)).ingestNewData(incompleteFile); // checked again without a change
+    }
+}
@@ -0,0 +1,123 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.properties.LiveIngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class LivePriceQueueTest {
+
+    private final CryptoCurrencyService service = mock(CryptoCurrencyService.class);
+    private LivePriceQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.destroy();
+    }
+
+    @Test
+    void shouldSaveQueuedRecordsInMicroBatches() {
+        queue = queue(100, 2, Duration.ofMillis(50));
+
+        assertTrue(queue.offer(records(5)));
+
+        verify(service, timeout(1000).times(2)).saveCryptos(argThat(batch -> batch.size() == 2));
+        verify(service, timeout(1000)).saveCryptos(argThat(batch -> batch.size() == 1));
+    }
+
+    @Test
+    void shouldRejectRecordsNotFittingInTheQueue() throws InterruptedException {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            saving.countDown();
+            saved.await();
+            return null;
+        }).when(service).saveCryptos(anyList());
+        queue = queue(3, 3, Duration.ZERO);
+
+        assertTrue(queue.offer(records(3)));
+        saving.await();
+        assertFalse(queue.offer(records(1))); // records are counted until they are saved
+
+        saved.countDown();
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        boolean accepted;
+        while (!(accepted = queue.offer(records(1))) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(accepted); // there is room again once the batch is saved
+    }
+
+    @Test
+    void shouldSaveRecordsOfBatchFailedBecauseOfItsDataOneByOne() {
+        List<CsvDataRecord> records = records(3);
+        doThrow(new DataIntegrityViolationException("batch")).when(service).saveCryptos(records);
+        doThrow(new DataIntegrityViolationException("single")).when(service).saveCryptos(List.of(records.get(1)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queue = queue(100, 3, Duration.ofMillis(50), meterRegistry);
+
+        assertTrue(queue.offer(records));
+
+        verify(service, timeout(1000)).saveCryptos(List.of(records.get(0)));
+        verify(service, timeout(1000)).saveCryptos(List.of(records.get(2)));
+        verify(service, timeout(1000)).saveCryptos(List.of(records.get(1)));
+        assertEquals(1.0, meterRegistry.get("crypto.ingest.live.records").tag("result", "dropped").counter().count());
+    }
+
+    @Test
+    void shouldSaveBatchAgainWhileDatabaseIsNotAvailable() {
+        List<CsvDataRecord> records = records(3);
+        doThrow(new CannotAcquireLockException("lock"))
+            .doThrow(new DataAccessResourceFailureException("down"))
+            .doNothing()
+            .when(service).saveCryptos(records);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queue = queue(3, 3, Duration.ofMillis(50), meterRegistry);
+
+        assertTrue(queue.offer(records));
+        verify(service, timeout(1000).times(2)).saveCryptos(records);
+        assertFalse(queue.offer(records(1))); // records being retried are still counted
+
+        verify(service, timeout(1000).times(3)).saveCryptos(records);
+        verify(service, never()).saveCryptos(List.of(records.get(0)));
+        assertEquals(0.0, meterRegistry.get("crypto.ingest.live.records").tag("result", "dropped").counter().count());
+        assertEquals(2.0, meterRegistry.get("crypto.ingest.live.retries").counter().count());
+    }
+
+    private LivePriceQueue queue(int capacity, int batchSize, Duration maxBatchDelay) {
+        return queue(capacity, batchSize, maxBatchDelay, new SimpleMeterRegistry());
+    }
+
+    private LivePriceQueue queue(int capacity, int batchSize, Duration maxBatchDelay, SimpleMeterRegistry meterRegistry) {
+        LiveIngestProperties properties = new LiveIngestProperties();
+        properties.setQueueCapacity(capacity);
+        properties.setBatchSize(batchSize);
+        properties.setMaxBatchDelay(maxBatchDelay);
+        properties.setRetryBackoff(Duration.ofMillis(100));
+        return new LivePriceQueue(service, properties, meterRegistry);
+    }
+
+    private static List<CsvDataRecord> records(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> new CsvDataRecord(Instant.ofEpochMilli(1641024000000L + i), "ETH", FixedPointPrice.of("3715.32")))
+            .toList();
+    }
+}
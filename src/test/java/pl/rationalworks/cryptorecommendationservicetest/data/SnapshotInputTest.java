@@ -0,0 +1,55 @@
+package pl.rationalworks.cryptorecommendationservicetest.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotInputTest {
+
+    @Test
+    void shouldReadValuesWrittenBySnapshotOutput() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(bytes);
+        out.writeInt(0x4352534E);
+        out.writeVarLong(0);
+        out.writeVarLong(127);
+        out.writeVarLong(128);
+        out.writeVarLong(Long.MAX_VALUE);
+        out.writeSignedVarLong(-1);
+        out.writeSignedVarLong(Long.MIN_VALUE);
+        out.writeString("DOGE");
+        out.writeInstant(Instant.parse("2022-01-01T04:00:00.123456Z"));
+        out.writeInstant(Instant.parse("1969-12-31T23:59:59Z"));
+
+        SnapshotInput in = new SnapshotInput(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(0x4352534E, in.readInt());
+        assertEquals(0, in.readVarLong());
+        assertEquals(127, in.readVarLong());
+        assertEquals(128, in.readVarLong());
+        assertEquals(Long.MAX_VALUE, in.readVarLong());
+        assertEquals(-1, in.readSignedVarLong());
+        assertEquals(Long.MIN_VALUE, in.readSignedVarLong());
+        assertEquals("DOGE", in.readString());
+        assertEquals(Instant.parse("2022-01-01T04:00:00.123456Z"), in.readInstant());
+        assertEquals(Instant.parse("1969-12-31T23:59:59Z"), in.readInstant());
+        assertThrows(IOException.class, in::readVarLong);
+    }
+
+    @Test
+    void shouldWriteSmallDeltasInSingleBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(bytes);
+
+        out.writeSignedVarLong(63);
+        out.writeSignedVarLong(-64);
+
+        assertEquals(2, bytes.size());
+    }
+}
@@ -0,0 +1,79 @@
+package pl.rationalworks.cryptorecommendationservicetest.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import pl.rationalworks.cryptorecommendationservicetest.data.InputDataIngestor;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.properties.SchedulingProperties;
+import pl.rationalworks.cryptorecommendationservicetest.service.CryptoCurrencyService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CryptoCurrencyProcessingSchedulerTest {
+
+    private static final LocalDate JAN_1 = LocalDate.parse("2022-01-01");
+
+    private final CryptoCurrencyService service = Mockito.mock(CryptoCurrencyService.class);
+    private final SchedulingProperties schedulingProperties = new SchedulingProperties();
+    private CryptoCurrencyProcessingScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void shouldNotEvaluateDailyFactorsOfNextDatesOnceBudgetIsExceeded() {
+        schedulingProperties.setMaxDatesPerTick(4);
+        schedulingProperties.setCatchUpParallelism(2);
+        schedulingProperties.setTickBudget(Duration.ZERO);
+        Mockito.when(service.findUnprocessedDates())
+            .thenReturn(List.of(JAN_1, JAN_1.plusDays(1), JAN_1.plusDays(2), JAN_1.plusDays(3)));
+
+        scheduler().startCryptoProcessing();
+
+        // the first date is always processed, together with daily factors of the first batch of dates
+        verify(service).evaluateDailyFactors(JAN_1);
+        verify(service).evaluateDailyFactors(JAN_1.plusDays(1));
+        verify(service, never()).evaluateDailyFactors(JAN_1.plusDays(2));
+        verify(service).markDataAsProcessed(JAN_1);
+        verify(service, never()).markDataAsProcessed(JAN_1.plusDays(1));
+    }
+
+    @Test
+    void shouldProcessAllDatesWithinBudget() {
+        schedulingProperties.setMaxDatesPerTick(3);
+        schedulingProperties.setCatchUpParallelism(2);
+        Mockito.when(service.findUnprocessedDates())
+            .thenReturn(List.of(JAN_1, JAN_1.plusDays(1), JAN_1.plusDays(2), JAN_1.plusDays(3)));
+
+        scheduler().startCryptoProcessing();
+
+        for (int i = 0; i < 3; i++) {
+            verify(service).evaluateDailyFactors(JAN_1.plusDays(i));
+            verify(service).evaluateNormalizedFactors(JAN_1.plusDays(i));
+            verify(service).markDataAsProcessed(JAN_1.plusDays(i));
+        }
+        verify(service, never()).evaluateDailyFactors(JAN_1.plusDays(3));
+    }
+
+    private CryptoCurrencyProcessingScheduler scheduler() {
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setIncrementalDailyFactors(false);
+        scheduler = new CryptoCurrencyProcessingScheduler(service, Mockito.mock(InputDataIngestor.class), ingestProperties,
+            schedulingProperties, transactionManager, new SimpleMeterRegistry());
+        return scheduler;
+    }
+}
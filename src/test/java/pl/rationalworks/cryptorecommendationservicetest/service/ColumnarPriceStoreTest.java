@@ -0,0 +1,84 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.Test;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrencyId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.properties.PriceStoreProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.PeriodNormalizedFactors;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColumnarPriceStoreTest {
+
+    @Test
+    void shouldEvaluateDailyFactorsOfPricesSavedOutOfOrder() {
+        ColumnarPriceStore store = store(
+            price("2022-01-26T17:00:00Z", "0.150500"),
+            price("2022-01-26T01:00:00Z", "0.150500"),
+            price("2022-01-25T22:00:00Z", "0.141600"),
+            price("2022-01-26T15:00:00Z", "0.141800"),
+            price("2022-01-26T12:00:00Z", "0.141800"),
+            price("2022-01-26T01:00:00Z", "0.150400") // replaces the price saved before
+        );
+
+        List<CryptoDailyPriceFactors> factors = store.evaluateDailyFactors(LocalDate.parse("2022-01-26"), Set.of("DOGE"));
+
+        assertEquals(1, factors.size());
+        CryptoDailyPriceFactors f = factors.get(0);
+        assertEquals(FixedPointPrice.of("0.14180"), f.minPrice());
+        assertEquals(Instant.parse("2022-01-26T12:00:00Z"), f.minPriceDate());
+        assertEquals(FixedPointPrice.of("0.15050"), f.maxPrice());
+        assertEquals(Instant.parse("2022-01-26T17:00:00Z"), f.maxPriceDate());
+        assertEquals(FixedPointPrice.of("0.15040"), f.oldestPrice());
+        assertEquals(Instant.parse("2022-01-26T01:00:00Z"), f.oldestPriceDate());
+        assertEquals(FixedPointPrice.of("0.15050"), f.newestPrice());
+        assertEquals(Instant.parse("2022-01-26T17:00:00Z"), f.newestPriceDate());
+        assertEquals(FixedPointPrice.of("0.06135"), f.dailyPriceFactor()); // 0.00870 / 0.14180 = 0.061354...
+        assertEquals(Set.of("DOGE"), store.findSymbolsByDate(LocalDate.parse("2022-01-25")));
+        assertEquals(Set.of(), store.findSymbolsByDate(LocalDate.parse("2022-01-27")));
+    }
+
+    @Test
+    void shouldEvaluateNormalizedFactorsFromDailyMinAndMaxPrices() {
+        ColumnarPriceStore store = store(
+            price("2022-01-01T10:00:00Z", "10"),
+            price("2022-01-01T12:00:00Z", "20"),
+            price("2022-01-20T10:00:00Z", "30"),
+            price("2022-01-20T12:00:00Z", "40"),
+            price("2022-01-21T10:00:00Z", "50")
+        );
+        LocalDate date = LocalDate.parse("2022-01-21");
+
+        List<PeriodNormalizedFactors> factors = store.evaluatePeriodNormalizedFactors(date, date.minusDays(7),
+            date.minusDays(30), Set.of("DOGE"));
+
+        assertEquals(List.of(new PeriodNormalizedFactors("DOGE",
+            FixedPointPrice.of("0.12500"), // (40 + 50 - 30 - 50) / (30 + 50)
+            FixedPointPrice.of("0.22222"))), factors); // (20 + 40 + 50 - 10 - 30 - 50) / (10 + 30 + 50)
+        assertNull(store.evaluatePeriodNormalizedFactors(LocalDate.parse("2022-01-10"), LocalDate.parse("2022-01-03"),
+            LocalDate.parse("2021-12-31"), Set.of("DOGE")).get(0).weeklyFactor());
+    }
+
+    private static ColumnarPriceStore store(CryptoCurrency... prices) {
+        PriceStoreProperties properties = new PriceStoreProperties();
+        properties.setSegmentSize(2);
+        ColumnarPriceStore store = new ColumnarPriceStore(properties);
+        store.onPricesSaved(new PricesSavedEvent(List.of(prices)));
+        return store;
+    }
+
+    private static CryptoCurrency price(String timestamp, String price) {
+        Instant instant = Instant.parse(timestamp);
+        return new CryptoCurrency(new CryptoCurrencyId(instant, "DOGE"), LocalDate.ofInstant(instant, ZoneOffset.UTC),
+            FixedPointPrice.of(price), false);
+    }
+}
@@ -4,17 +4,34 @@ import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import pl.rationalworks.cryptorecommendationservicetest.data.CsvDataRecord;
 import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoPeriodPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.model.PeriodPriceFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.properties.IngestProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyBulkRepository;
 import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorBulkRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRepository;
+import pl.rationalworks.cryptorecommendationservicetest.repository.NormalizedFactor;
+import pl.rationalworks.cryptorecommendationservicetest.repository.PeriodPriceFactorRepository;
 
-import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -29,25 +46,147 @@ class CryptoCurrencyServiceTest {
     private CryptoCurrencyService service;
     @Mock
     private CryptoCurrencyRepository cryptoCurrencyRepository;
+    @Mock
+    private CryptoCurrencyBulkRepository cryptoCurrencyBulkRepository;
+    @Mock
+    private DailyRecentFactorBulkRepository dailyRecentFactorBulkRepository;
+    @Mock
+    private IngestProperties ingestProperties;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private RankingCache rankingCache;
+    @Mock
+    private DailyRecentFactorRepository dailyRecentFactorRepository;
+    @Mock
+    private PeriodPriceFactorRepository periodPriceFactorRepository;
 
     @Test
     void shouldSaveAllGivenDataRecords() {
         List<CsvDataRecord> dataRecords = List.of(
-                new CsvDataRecord(Instant.parse("2022-01-25T22:00:00Z"), "DOGE", new BigDecimal("0.141600")),
-                new CsvDataRecord(Instant.parse("2022-01-26T01:00:00Z"), "DOGE", new BigDecimal("0.141800")),
-                new CsvDataRecord(Instant.parse("2022-01-26T15:00:00Z"), "DOGE", new BigDecimal("0.150200")),
-                new CsvDataRecord(Instant.parse("2022-01-26T17:00:00Z"), "DOGE", new BigDecimal("0.150500")),
-                new CsvDataRecord(Instant.parse("2022-01-27T12:00:00Z"), "DOGE", new BigDecimal("0.142700")),
-                new CsvDataRecord(Instant.parse("2022-01-28T04:00:00Z"), "DOGE", new BigDecimal("0.141100"))
+                new CsvDataRecord(Instant.parse("2022-01-25T22:00:00Z"), "DOGE", FixedPointPrice.of("0.141600")),
+                new CsvDataRecord(Instant.parse("2022-01-26T01:00:00Z"), "DOGE", FixedPointPrice.of("0.141800")),
+                new CsvDataRecord(Instant.parse("2022-01-26T15:00:00Z"), "DOGE", FixedPointPrice.of("0.150200")),
+                new CsvDataRecord(Instant.parse("2022-01-26T17:00:00Z"), "DOGE", FixedPointPrice.of("0.150500")),
+                new CsvDataRecord(Instant.parse("2022-01-27T12:00:00Z"), "DOGE", FixedPointPrice.of("0.142700")),
+                new CsvDataRecord(Instant.parse("2022-01-28T04:00:00Z"), "DOGE", FixedPointPrice.of("0.141100"))
         );
 
         service.saveCryptos(dataRecords);
 
-        verify(cryptoCurrencyRepository, times(1))
-                .saveAll(assertArg(records -> {
+        verify(cryptoCurrencyBulkRepository, times(1))
+                .upsertAll(assertArg(records -> {
                     List<CryptoCurrency> cryptoCurrencies = StreamSupport.stream(records.spliterator(), false).toList();
+                    assertEquals(dataRecords.size(), cryptoCurrencies.size());
                     cryptoCurrencies.forEach(cc -> assertEquals("DOGE", cc.getId().getSymbol()));
                 }));
+        verifyNoMoreInteractions(cryptoCurrencyBulkRepository);
+        verifyNoInteractions(cryptoCurrencyRepository);
+    }
+
+    @Test
+    void shouldFoldSavedDataRecordsIntoDailyFactors() {
+        when(ingestProperties.isIncrementalDailyFactors()).thenReturn(true);
+        List<CsvDataRecord> dataRecords = List.of(
+                new CsvDataRecord(Instant.parse("2022-01-25T22:00:00Z"), "DOGE", FixedPointPrice.of("0.141600")),
+                new CsvDataRecord(Instant.parse("2022-01-26T01:00:00Z"), "DOGE", FixedPointPrice.of("0.150500")),
+                new CsvDataRecord(Instant.parse("2022-01-26T15:00:00Z"), "DOGE", FixedPointPrice.of("0.141800")),
+                new CsvDataRecord(Instant.parse("2022-01-26T17:00:00Z"), "DOGE", FixedPointPrice.of("0.150500")),
+                new CsvDataRecord(Instant.parse("2022-01-26T12:00:00Z"), "DOGE", FixedPointPrice.of("0.141800"))
+        );
+
+        service.saveCryptos(dataRecords);
+
+        verify(dailyRecentFactorBulkRepository, times(1))
+                .mergeDailyPriceFactors(assertArg(factors -> {
+                    assertEquals(2, factors.size());
+                    CryptoDailyPriceFactors f = factors.get(new DailyRecentFactorId("DOGE", LocalDate.parse("2022-01-26")));
+                    assertEquals(FixedPointPrice.of("0.141800"), f.minPrice());
+                    assertEquals(Instant.parse("2022-01-26T12:00:00Z"), f.minPriceDate());
+                    assertEquals(FixedPointPrice.of("0.150500"), f.maxPrice());
+                    assertEquals(Instant.parse("2022-01-26T17:00:00Z"), f.maxPriceDate());
+                    assertEquals(FixedPointPrice.of("0.150500"), f.oldestPrice());
+                    assertEquals(Instant.parse("2022-01-26T01:00:00Z"), f.oldestPriceDate());
+                    assertEquals(FixedPointPrice.of("0.150500"), f.newestPrice());
+                    assertEquals(Instant.parse("2022-01-26T17:00:00Z"), f.newestPriceDate());
+                }));
+        verify(eventPublisher).publishEvent(new FactorsUpdatedEvent(
+                Set.of(LocalDate.parse("2022-01-25"), LocalDate.parse("2022-01-26")), Set.of("DOGE")));
+    }
+
+    @Test
+    void shouldEvaluateAgainDaysOnWhichStoredPricesAreReplaced() {
+        when(ingestProperties.isIncrementalDailyFactors()).thenReturn(true);
+        LocalDate date = LocalDate.parse("2022-01-26");
+        List<CsvDataRecord> dataRecords = List.of(
+                new CsvDataRecord(Instant.parse("2022-01-26T01:00:00Z"), "DOGE", FixedPointPrice.of("0.145000")),
+                new CsvDataRecord(Instant.parse("2022-01-27T12:00:00Z"), "DOGE", FixedPointPrice.of("0.142700")));
+        when(cryptoCurrencyBulkRepository.findReplacedDays(anyCollection()))
+                .thenReturn(Set.of(new DailyRecentFactorId("DOGE", date)));
+        CryptoDailyPriceFactors evaluated = new CryptoDailyPriceFactors("DOGE",
+                FixedPointPrice.of("0.141800"), Instant.parse("2022-01-26T15:00:00Z"),
+                FixedPointPrice.of("0.150500"), Instant.parse("2022-01-26T17:00:00Z"),
+                FixedPointPrice.of("0.145000"), Instant.parse("2022-01-26T01:00:00Z"),
+                FixedPointPrice.of("0.150500"), Instant.parse("2022-01-26T17:00:00Z"), FixedPointPrice.of("0.06135"));
+        when(cryptoCurrencyRepository.evaluateDailyFactors(date, Set.of("DOGE"))).thenReturn(List.of(evaluated));
+
+        service.saveCryptos(dataRecords);
+
+        InOrder inOrder = inOrder(cryptoCurrencyBulkRepository, dailyRecentFactorBulkRepository);
+        inOrder.verify(cryptoCurrencyBulkRepository).findReplacedDays(anyCollection());
+        inOrder.verify(cryptoCurrencyBulkRepository).upsertAll(anyCollection());
+        inOrder.verify(dailyRecentFactorBulkRepository).mergeDailyPriceFactors(anyMap());
+        inOrder.verify(dailyRecentFactorBulkRepository).upsertFactors(assertArg(factors -> {
+            assertEquals(1, factors.size());
+            CryptoDailyAggregatedFactors f = factors.iterator().next();
+            assertEquals(new DailyRecentFactorId("DOGE", date), f.getId());
+            assertEquals(FixedPointPrice.of("0.141800"), f.getMinPrice());
+            assertEquals(FixedPointPrice.of("0.06135"), f.getDailyNormalizedFactor());
+        }));
         verifyNoMoreInteractions(cryptoCurrencyRepository);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldPageRankingWithKeysetCursors() {
+        LocalDate date = LocalDate.parse("2022-01-07");
+        List<NormalizedFactor> ranking = List.of(
+                new NormalizedFactor("XRP", FixedPointPrice.of("0.10517")),
+                new NormalizedFactor("DOGE", FixedPointPrice.of("0.08434")),
+                new NormalizedFactor("ETH", FixedPointPrice.of("0.08434")),
+                new NormalizedFactor("BTC", (FixedPointPrice) null),
+                new NormalizedFactor("LTC", (FixedPointPrice) null));
+        when(rankingCache.getRanking(date, FactorPeriod.WEEK)).thenReturn(ranking);
+
+        RankingPage first = service.cryptoRanking(date, FactorPeriod.WEEK, Optional.empty(), 2);
+        RankingPage second = service.cryptoRanking(date, FactorPeriod.WEEK,
+                first.nextCursor().map(c -> RankingCursor.decode(c.encode())), 2);
+        RankingPage last = service.cryptoRanking(date, FactorPeriod.WEEK, second.nextCursor(), 2);
+        // the cursor key does not have to be in the ranking (anymore)
+        RankingPage afterRemoved = service.cryptoRanking(date, FactorPeriod.WEEK,
+                Optional.of(new RankingCursor(FixedPointPrice.of("0.09"), "ADA")), 10);
+
+        assertEquals(ranking.subList(0, 2), first.items());
+        assertEquals(ranking.subList(2, 4), second.items());
+        assertEquals(ranking.subList(4, 5), last.items());
+        assertEquals(Optional.empty(), last.nextCursor());
+        assertEquals(ranking.subList(1, 5), afterRemoved.items());
+    }
+
+    @Test
+    void shouldAggregateFactorsOfSymbolsWhichAreNotMaterializedYet() {
+        LocalDate date = LocalDate.parse("2022-01-07");
+        Instant timestamp = Instant.parse("2022-01-05T10:00:00Z");
+        FixedPointPrice price = FixedPointPrice.of("0.17");
+        when(periodPriceFactorRepository.findAllByReferenceDate(date, FactorPeriod.WEEK, Set.of("DOGE", "ETH", "XRP")))
+                .thenReturn(List.of(new CryptoPeriodPriceFactors(new PeriodPriceFactorId("XRP", date, FactorPeriod.WEEK),
+                        price, timestamp, price, timestamp, price, timestamp, price, timestamp)));
+        when(dailyRecentFactorRepository.evaluateAggregatedMinMaxPriceFactors(Set.of("DOGE", "ETH"), date, date.minusDays(7)))
+                .thenReturn(List.of(new CryptoDailyPriceFactors("DOGE", price, timestamp, price, timestamp,
+                        price, timestamp, price, timestamp, null)));
+
+        List<CryptoDailyPriceFactors> factors = service.getCryptoPriceFactors(Optional.of(Set.of("DOGE", "ETH", "XRP")),
+                date, FactorPeriod.WEEK);
+
+        assertEquals(List.of("DOGE", "XRP"), factors.stream().map(CryptoDailyPriceFactors::symbol).toList());
+    }
+}
@@ -0,0 +1,86 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrency;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoCurrencyId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoCurrencyRepository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class DataVersionRegistryTest {
+
+    private static final LocalDate JAN_10 = LocalDate.parse("2022-01-10");
+    private static final LocalDate JAN_20 = LocalDate.parse("2022-01-20");
+
+    @Mock
+    private CryptoCurrencyRepository cryptoCurrencyRepository;
+    @InjectMocks
+    private DataVersionRegistry registry;
+
+    @Test
+    void shouldChangeVersionOfRangesContainingUpdatedDates() {
+        assertEquals(0, registry.getVersion(JAN_10, JAN_20).version());
+
+        registry.onFactorsUpdated(new FactorsUpdatedEvent(Set.of(JAN_10), Set.of("BTC")));
+        long jan10 = registry.getVersion(JAN_10, JAN_10).version();
+        registry.onFactorsUpdated(new FactorsUpdatedEvent(Set.of(JAN_20), Set.of("BTC")));
+
+        assertNotEquals(0, jan10);
+        assertEquals(jan10, registry.getVersion(JAN_10, JAN_20.minusDays(1)).version());
+        assertNotEquals(jan10, registry.getVersion(JAN_10, JAN_20).version());
+        assertEquals(0, registry.getVersion(JAN_10.minusDays(7), JAN_10.minusDays(1)).version());
+    }
+
+    @Test
+    void shouldLookUpWhetherDatesAreProcessedUntilTheyChange() {
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(JAN_10, JAN_20, true)).thenReturn(List.of(JAN_10, JAN_20));
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(JAN_10, JAN_20, false)).thenReturn(List.of(JAN_20));
+
+        assertFalse(registry.isProcessed(JAN_10, JAN_20)); // dates between have no prices
+        assertTrue(registry.isProcessed(JAN_10, JAN_10));
+        assertFalse(registry.isProcessed(JAN_20, JAN_20));
+
+        registry.onDataProcessed(new DataProcessedEvent(JAN_20));
+        assertTrue(registry.isProcessed(JAN_20, JAN_20));
+
+        // new prices make the date unprocessed again
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(JAN_10, JAN_10, true)).thenReturn(List.of(JAN_10));
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(JAN_10, JAN_10, false)).thenReturn(List.of(JAN_10));
+        registry.onPricesSaved(new PricesSavedEvent(List.of(new CryptoCurrency(
+            new CryptoCurrencyId(Instant.parse("2022-01-10T12:00:00Z"), "BTC"), JAN_10, FixedPointPrice.of("1"), false))));
+        assertFalse(registry.isProcessed(JAN_10, JAN_10));
+        assertFalse(registry.isProcessed(JAN_10, JAN_10));
+        Mockito.verify(cryptoCurrencyRepository, Mockito.times(1)).findDatesByProcessed(JAN_10, JAN_10, true);
+        Mockito.verify(cryptoCurrencyRepository, Mockito.times(1)).findDatesByProcessed(JAN_10, JAN_20, true);
+    }
+
+    @Test
+    void shouldKeepDatesWithoutPricesUntilPricesAreSaved() {
+        LocalDate jan11 = JAN_10.plusDays(1);
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(JAN_10, JAN_20, true)).thenReturn(List.of(JAN_10));
+
+        assertFalse(registry.isProcessed(JAN_10, JAN_20));
+        assertFalse(registry.isProcessed(JAN_10, JAN_20));
+        Mockito.verify(cryptoCurrencyRepository, Mockito.times(1)).findDatesByProcessed(JAN_10, JAN_20, true);
+
+        registry.onFactorsUpdated(new FactorsUpdatedEvent(Set.of(jan11), Set.of("BTC")));
+        Mockito.when(cryptoCurrencyRepository.findDatesByProcessed(jan11, JAN_20, true)).thenReturn(List.of(jan11));
+        assertFalse(registry.isProcessed(JAN_10, JAN_20));
+        Mockito.verify(cryptoCurrencyRepository, Mockito.times(1)).findDatesByProcessed(jan11, JAN_20, true);
+    }
+}
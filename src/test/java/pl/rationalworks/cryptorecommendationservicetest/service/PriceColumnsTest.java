@@ -0,0 +1,65 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceColumnsTest {
+
+    @Test
+    void shouldMergePricesAppendedOutOfOrderIntoTail() {
+        PriceColumns columns = new PriceColumns(2);
+        columns.append(10, 1);
+        columns.append(20, 2);
+        columns.append(30, 3);
+        columns.append(40, 4);
+        columns.append(25, 5);
+        columns.append(30, 6); // replaces the price appended before
+        columns.append(50, 7);
+        columns.append(25, 8); // replaces the price appended out of order before
+
+        assertEquals(List.of(10L, 1L, 20L, 2L, 25L, 8L, 30L, 6L, 40L, 4L, 50L, 7L), contents(columns));
+        assertEquals(2, columns.lowerBound(21));
+
+        columns.append(5, 9);
+        assertEquals(0, columns.lowerBound(5));
+        assertEquals(7, columns.size());
+    }
+
+    @Test
+    void shouldKeepLastPriceOfEachTimestampInTimeOrder() {
+        Random random = new Random(42);
+        PriceColumns columns = new PriceColumns(3);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            // mostly in order, with late and repeated prices
+            long timestamp = random.nextInt(10) == 0 ? random.nextInt(i + 1) : i;
+            columns.append(timestamp, i);
+            expected.put(timestamp, (long) i);
+            if (random.nextInt(50) == 0) {
+                columns.size(); // merges what has been appended out of order so far
+            }
+        }
+
+        List<Long> contents = new ArrayList<>();
+        expected.forEach((timestamp, price) -> {
+            contents.add(timestamp);
+            contents.add(price);
+        });
+        assertEquals(contents, contents(columns));
+    }
+
+    private static List<Long> contents(PriceColumns columns) {
+        List<Long> contents = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            contents.add(columns.timestamp(i));
+            contents.add(columns.price(i));
+        }
+        return contents;
+    }
+}
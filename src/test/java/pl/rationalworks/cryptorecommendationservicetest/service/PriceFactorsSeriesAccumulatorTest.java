@@ -0,0 +1,57 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.Test;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FactorPeriod;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceFactorsSeriesAccumulatorTest {
+
+    @Test
+    void shouldFoldDailyFactorsIntoCalendarWeeks() {
+        List<PriceFactorsBucket> buckets = new ArrayList<>();
+        PriceFactorsSeriesAccumulator accumulator = new PriceFactorsSeriesAccumulator(FactorPeriod.WEEK, buckets::add);
+
+        accumulator.add(day("2022-01-02", "10", "12")); // Sunday
+        accumulator.add(day("2022-01-03", "9", "14")); // Monday
+        accumulator.add(day("2022-01-05", "9", "14"));
+        accumulator.add(day("2022-01-09", "11", "13")); // Sunday
+        accumulator.finish();
+
+        assertEquals(2, buckets.size());
+        assertEquals(LocalDate.parse("2021-12-27"), buckets.get(0).date());
+        PriceFactorsBucket week = buckets.get(1);
+        assertEquals(LocalDate.parse("2022-01-03"), week.date());
+        assertEquals(FixedPointPrice.of("9"), week.minPrice());
+        assertEquals(Instant.parse("2022-01-03T01:00:00Z"), week.minPriceDate()); // the earliest of equal prices
+        assertEquals(FixedPointPrice.of("14"), week.maxPrice());
+        assertEquals(Instant.parse("2022-01-05T02:00:00Z"), week.maxPriceDate()); // the latest of equal prices
+        assertEquals(Instant.parse("2022-01-03T00:00:00Z"), week.oldestPriceDate());
+        assertEquals(Instant.parse("2022-01-09T23:00:00Z"), week.newestPriceDate());
+        // (14 + 14 + 13 - 9 - 9 - 11) / (9 + 9 + 11)
+        assertEquals(FixedPointPrice.of("0.41379"), week.normalizedFactor());
+    }
+
+    private static CryptoDailyAggregatedFactors day(String date, String min, String max) {
+        LocalDate day = LocalDate.parse(date);
+        return CryptoDailyAggregatedFactors.builder()
+            .id(new DailyRecentFactorId("BTC", day))
+            .minPrice(FixedPointPrice.of(min))
+            .minPriceDate(Instant.parse(date + "T01:00:00Z"))
+            .maxPrice(FixedPointPrice.of(max))
+            .maxPriceDate(Instant.parse(date + "T02:00:00Z"))
+            .oldestPrice(FixedPointPrice.of(min))
+            .oldestPriceDate(Instant.parse(date + "T00:00:00Z"))
+            .newestPrice(FixedPointPrice.of(max))
+            .newestPriceDate(Instant.parse(date + "T23:00:00Z"))
+            .build();
+    }
+}
@@ -0,0 +1,60 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import pl.rationalworks.cryptorecommendationservicetest.properties.EvaluationProperties;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SymbolShardExecutorTest {
+
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    private final SymbolShardExecutor executor;
+
+    SymbolShardExecutorTest() {
+        EvaluationProperties properties = new EvaluationProperties();
+        properties.setShardSize(2);
+        properties.setParallelism(2);
+        Mockito.when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        executor = new SymbolShardExecutor(properties, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void shouldReturnResultsOfAllShardsQueriedInReadOnlyTransactions() {
+        List<String> results = executor.query(Set.of("XRP", "BTC", "LTC", "ETH", "DOGE"),
+            symbols -> symbols.stream().map(s -> s + "/" + symbols.size()).toList());
+
+        assertEquals(List.of("BTC/2", "DOGE/2", "ETH/2", "LTC/2", "XRP/1"), results);
+        verify(transactionManager, times(3)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    }
+
+    @Test
+    void shouldFailWithFailureOfAnyShard() {
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+            () -> executor.query(Set.of("BTC", "DOGE", "ETH", "LTC", "XRP"), symbols -> {
+                if (symbols.contains("ETH")) {
+                    throw new IllegalStateException("ETH");
+                }
+                return symbols;
+            }));
+
+        assertEquals("ETH", failure.getMessage());
+    }
+}
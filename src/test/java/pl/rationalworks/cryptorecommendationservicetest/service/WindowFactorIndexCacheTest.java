@@ -0,0 +1,39 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.rationalworks.cryptorecommendationservicetest.properties.WindowProperties;
+import pl.rationalworks.cryptorecommendationservicetest.repository.DailyRecentFactorRangeRepository;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class WindowFactorIndexCacheTest {
+
+    private static final Set<LocalDate> DATES = Set.of(LocalDate.parse("2022-01-10"));
+
+    private final DailyRecentFactorRangeRepository repository = mock(DailyRecentFactorRangeRepository.class);
+    private final WindowFactorIndexCache cache = new WindowFactorIndexCache(repository, new WindowProperties(),
+        new SimpleMeterRegistry());
+
+    @Test
+    void shouldEvictIndexesOfUpdatedCryptosOnly() {
+        WindowFactorIndex btc = cache.getIndex("BTC");
+        WindowFactorIndex eth = cache.getIndex("ETH");
+
+        cache.onFactorsUpdated(new FactorsUpdatedEvent(DATES, Set.of("ETH", "XRP")));
+
+        assertSame(btc, cache.getIndex("BTC"));
+        assertNotSame(eth, cache.getIndex("ETH"));
+        verify(repository, times(1)).forEachDailyFactors(eq("BTC"), any());
+        verify(repository, times(2)).forEachDailyFactors(eq("ETH"), any());
+    }
+}
@@ -0,0 +1,68 @@
+package pl.rationalworks.cryptorecommendationservicetest.service;
+
+import org.junit.jupiter.api.Test;
+import pl.rationalworks.cryptorecommendationservicetest.model.CryptoDailyAggregatedFactors;
+import pl.rationalworks.cryptorecommendationservicetest.model.DailyRecentFactorId;
+import pl.rationalworks.cryptorecommendationservicetest.model.FixedPointPrice;
+import pl.rationalworks.cryptorecommendationservicetest.repository.CryptoDailyPriceFactors;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WindowFactorIndexTest {
+
+    private final WindowFactorIndex index = WindowFactorIndex.build("BTC", List.of(
+        day("2022-01-01", "10", "12"),
+        day("2022-01-02", "9", "14"),
+        // 2022-01-03 and 2022-01-04 are missing
+        day("2022-01-05", "9", "14"),
+        day("2022-01-06", "11", "13"),
+        day("2022-01-07", "12", "12")));
+
+    @Test
+    void shouldEvaluateFactorsOfWindowsOfAnyLength() {
+        CryptoDailyPriceFactors all = index.window(LocalDate.parse("2022-01-31"), 365).orElseThrow();
+        assertEquals(FixedPointPrice.of("9"), all.minPrice());
+        assertEquals(Instant.parse("2022-01-02T01:00:00Z"), all.minPriceDate()); // the earliest of equal prices
+        assertEquals(FixedPointPrice.of("14"), all.maxPrice());
+        assertEquals(Instant.parse("2022-01-05T02:00:00Z"), all.maxPriceDate()); // the latest of equal prices
+        assertEquals(Instant.parse("2022-01-01T00:00:00Z"), all.oldestPriceDate());
+        assertEquals(Instant.parse("2022-01-07T23:00:00Z"), all.newestPriceDate());
+        // (12 + 14 + 14 + 13 + 12 - 10 - 9 - 9 - 11 - 12) / (10 + 9 + 9 + 11 + 12)
+        assertEquals(FixedPointPrice.of("0.27451"), all.dailyPriceFactor());
+
+        CryptoDailyPriceFactors threeDays = index.window(LocalDate.parse("2022-01-06"), 3).orElseThrow();
+        assertEquals(Instant.parse("2022-01-05T01:00:00Z"), threeDays.minPriceDate());
+        assertEquals(Instant.parse("2022-01-05T00:00:00Z"), threeDays.oldestPriceDate());
+        assertEquals(Instant.parse("2022-01-06T23:00:00Z"), threeDays.newestPriceDate());
+
+        CryptoDailyPriceFactors oneDay = index.window(LocalDate.parse("2022-01-07"), 1).orElseThrow();
+        assertEquals(FixedPointPrice.of("0"), oneDay.dailyPriceFactor());
+    }
+
+    @Test
+    void shouldFindNoFactorsOfWindowsWithoutDailyFactors() {
+        assertEquals(Optional.empty(), index.window(LocalDate.parse("2022-01-04"), 2));
+        assertEquals(Optional.empty(), index.window(LocalDate.parse("2021-12-31"), 30));
+        assertEquals(Optional.empty(), index.window(LocalDate.parse("2022-01-10"), 3));
+        assertEquals(Optional.empty(), WindowFactorIndex.build("BTC", List.of()).window(LocalDate.parse("2022-01-10"), 3));
+    }
+
+    private static CryptoDailyAggregatedFactors day(String date, String min, String max) {
+        return CryptoDailyAggregatedFactors.builder()
+            .id(new DailyRecentFactorId("BTC", LocalDate.parse(date)))
+            .minPrice(FixedPointPrice.of(min))
+            .minPriceDate(Instant.parse(date + "T01:00:00Z"))
+            .maxPrice(FixedPointPrice.of(max))
+            .maxPriceDate(Instant.parse(date + "T02:00:00Z"))
+            .oldestPrice(FixedPointPrice.of(min))
+            .oldestPriceDate(Instant.parse(date + "T00:00:00Z"))
+            .newestPrice(FixedPointPrice.of(max))
+            .newestPriceDate(Instant.parse(date + "T23:00:00Z"))
+            .build();
+    }
+}